@@ -0,0 +1,31 @@
+#!/bin/sh
+# Builds an application Class Data Sharing archive for headless mode and compares time to first move with and
+# without it. AppCDS only archives classes loaded from JAR files, so the compiled classes are packaged first.
+#
+# Usage: scripts/headless-cds.sh [classes-dir] [output-dir]
+#   classes-dir defaults to the IntelliJ output directory, out/production/Connect4
+set -e
+
+CLASSES=${1:-out/production/Connect4}
+OUTPUT=${2:-out/cds}
+JAR=$OUTPUT/connect4.jar
+CLASSLIST=$OUTPUT/connect4-headless.classlist
+ARCHIVE=$OUTPUT/connect4-headless.jsa
+
+mkdir -p "$OUTPUT"
+jar cf "$JAR" -C "$CLASSES" .
+
+# 1. record classes loaded by a headless run
+java -Xshare:off -XX:DumpLoadedClassList="$CLASSLIST" -cp "$JAR" core.Connect4 --headless > /dev/null
+# 2. dump them into a shared archive
+java -Xshare:dump -XX:SharedClassListFile="$CLASSLIST" -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" > /dev/null
+echo "Archive written to $ARCHIVE"
+echo "Run with: java -XX:SharedArchiveFile=$ARCHIVE -cp $JAR core.Connect4 --headless"
+
+# 3. compare time to first move
+for i in 1 2 3 4 5; do
+    printf 'default CDS:  '
+    java -cp "$JAR" core.Connect4 --headless --timing | head -1
+    printf 'headless CDS: '
+    java -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" core.Connect4 --headless --timing | head -1
+done
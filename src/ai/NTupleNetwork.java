@@ -0,0 +1,280 @@
+package ai;
+
+import core.Bitboard;
+import core.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * N-tuple network position evaluator.
+ * <p>
+ * The network is a set of tuples, each a fixed list of board cells. The contents of a tuple's cells (empty, first
+ * player or second player) form a base 3 index into that tuple's slice of a single flat weight table, and the value
+ * of a position is the squashed sum of one weight per tuple, looked up for both the board and its mirror image.
+ * Evaluation is therefore a few dozen table lookups on the packed bitboards, with no allocation.
+ * <p>
+ * Values are from the first player's point of view, between -1 (second player wins) and 1 (first player wins).
+ * Weights are trained by {@link TDTrainer} and stored as 16 bit fixed point in a compact binary file.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class NTupleNetwork {
+
+    /** Weights file magic number - "C4NT" */
+    private static final int MAGIC = 0x43344E54;
+    /** Weights file format version */
+    private static final int VERSION = 1;
+    /** System property naming weights file loaded by {@link #getDefault()} */
+    public static final String WEIGHTS_PROPERTY = "connect4.weights";
+
+    // INSTANCE VARIABLES
+    /** Number of rows on board */
+    private final int rows;
+    /** Number of columns on board */
+    private final int columns;
+    /** Number of tuples */
+    private final int tupleCount;
+    /** Number of cells in each tuple */
+    private final int tupleLength;
+    /** Entries in each tuple's slice of the weight table - 3 ^ tupleLength */
+    private final int tableSize;
+    /** Bit index of each tuple cell, tupleLength entries per tuple */
+    private final int[] tupleBits;
+    /** Bit index of each tuple cell in the mirrored board */
+    private final int[] mirrorBits;
+    /** Weight table, tableSize entries per tuple - updated without locks by training threads */
+    final float[] weights;
+
+    /**
+     * Constructor for network with given tuples and zero weights
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @param tupleLength number of cells in each tuple
+     * @param tupleBits bit index of each tuple cell, see {@link Bitboard} for layout
+     */
+    public NTupleNetwork(int rows, int columns, int tupleLength, int[] tupleBits) {
+        if(!Bitboard.fits(rows, columns)) throw new IllegalArgumentException("Board too large for packed positions");
+        if(tupleLength < 1 || tupleBits.length % tupleLength != 0) throw new IllegalArgumentException("Tuple cells do not match tuple length");
+        this.rows = rows;
+        this.columns = columns;
+        this.tupleLength = tupleLength;
+        this.tupleCount = tupleBits.length / tupleLength;
+        int size = 1;
+        for(int i = 0; i < tupleLength; i++) size *= 3;
+        this.tableSize = size;
+        this.tupleBits = tupleBits.clone();
+        this.mirrorBits = new int[tupleBits.length];
+        for(int i = 0; i < tupleBits.length; i++) {
+            int column = tupleBits[i] / (rows + 1);
+            int row = tupleBits[i] % (rows + 1);
+            this.mirrorBits[i] = Bitboard.bitIndex(rows, columns - 1 - column, row);
+        }
+        this.weights = new float[tupleCount * tableSize];
+    }
+
+    /**
+     * Creates network whose tuples are random connected walks over the board
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @param tupleCount number of tuples
+     * @param tupleLength number of cells in each tuple
+     * @param seed random seed, so the same tuples can be regenerated
+     * @return network with zero weights
+     */
+    public static NTupleNetwork randomWalks(int rows, int columns, int tupleCount, int tupleLength, long seed) {
+        if(tupleLength > rows * columns) throw new IllegalArgumentException("Tuple longer than board");
+        Random random = new Random(seed);
+        int[] bits = new int[tupleCount * tupleLength];
+        int[] columnOf = new int[tupleLength];
+        int[] rowOf = new int[tupleLength];
+        for(int t = 0; t < tupleCount; t++) {
+            int length = 0;
+            while(length < tupleLength) {
+                if(length == 0) {
+                    columnOf[0] = random.nextInt(columns);
+                    rowOf[0] = random.nextInt(rows);
+                    length = 1;
+                    continue;
+                }
+                // extend walk to a random unused neighbour, starting over if boxed in
+                boolean extended = false;
+                for(int attempt = 0; attempt < 16 && !extended; attempt++) {
+                    int c = columnOf[length - 1] + random.nextInt(3) - 1;
+                    int r = rowOf[length - 1] + random.nextInt(3) - 1;
+                    if(c < 0 || c >= columns || r < 0 || r >= rows) continue;
+                    boolean used = false;
+                    for(int k = 0; k < length; k++) if(columnOf[k] == c && rowOf[k] == r) used = true;
+                    if(used) continue;
+                    columnOf[length] = c;
+                    rowOf[length] = r;
+                    length++;
+                    extended = true;
+                }
+                if(!extended) length = 0;
+            }
+            for(int k = 0; k < tupleLength; k++) bits[t * tupleLength + k] = Bitboard.bitIndex(rows, columnOf[k], rowOf[k]);
+        }
+        return new NTupleNetwork(rows, columns, tupleLength, bits);
+    }
+
+    /** @return number of rows on board */
+    public int getRows() { return rows; }
+
+    /** @return number of columns on board */
+    public int getColumns() { return columns; }
+
+    /**
+     * @param first packed tokens of first player
+     * @param second packed tokens of second player
+     * @return value of position from the first player's point of view, between -1 and 1
+     */
+    public float evaluate(long first, long second) {
+        return (float) Math.tanh(sum(first, second));
+    }
+
+    /**
+     * @param position position to evaluate
+     * @return value of position from the first player's point of view, between -1 and 1
+     */
+    public float evaluate(Position position) { return evaluate(position.getFirst(), position.getSecond()); }
+
+    /**
+     * Chooses the move with the best value for the player to move, taking an immediate win if there is one
+     * @param position position to move from, left unchanged
+     * @return column index of chosen move, or -1 if there are no legal moves
+     */
+    public int selectMove(Position position) {
+        boolean firstToMove = (position.getMoves() & 1) == 0;
+        int best = -1;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for(int column = 0; column < position.getColumns(); column++) {
+            if(!position.canPlay(column)) continue;
+            if(position.isWinningMove(column)) return column;
+            position.play(column);
+            float value = evaluate(position);
+            position.undo(column);
+            if(!firstToMove) value = -value;
+            if(value > bestValue) {
+                bestValue = value;
+                best = column;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds delta to every weight used to evaluate a position
+     * @param first packed tokens of first player
+     * @param second packed tokens of second player
+     * @param delta amount to add
+     */
+    void update(long first, long second, float delta) {
+        for(int t = 0, offset = 0; t < tupleCount; t++, offset += tupleLength) {
+            int base = t * tableSize;
+            weights[base + index(first, second, tupleBits, offset)] += delta;
+            weights[base + index(first, second, mirrorBits, offset)] += delta;
+        }
+    }
+
+    /**
+     * @return raw sum of weights for position, before squashing
+     */
+    private float sum(long first, long second) {
+        float total = 0;
+        for(int t = 0, offset = 0; t < tupleCount; t++, offset += tupleLength) {
+            int base = t * tableSize;
+            total += weights[base + index(first, second, tupleBits, offset)];
+            total += weights[base + index(first, second, mirrorBits, offset)];
+        }
+        return total;
+    }
+
+    /**
+     * @return base 3 index of tuple cell contents
+     */
+    private int index(long first, long second, int[] bits, int offset) {
+        int index = 0;
+        for(int k = offset; k < offset + tupleLength; k++) {
+            int bit = bits[k];
+            index = index * 3 + (int) ((first >>> bit) & 1) + 2 * (int) ((second >>> bit) & 1);
+        }
+        return index;
+    }
+
+    /**
+     * Writes network to file - weights are stored as 16 bit fixed point scaled to the largest weight
+     * @param path file to write
+     * @throws IOException if file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        float max = 0;
+        for(float weight : weights) max = Math.max(max, Math.abs(weight));
+        float scale = max == 0 ? 1 : max / Short.MAX_VALUE;
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(rows);
+            out.writeByte(columns);
+            out.writeByte(tupleLength);
+            out.writeShort(tupleCount);
+            for(int bit : tupleBits) out.writeByte(bit);
+            out.writeFloat(scale);
+            for(float weight : weights) out.writeShort(Math.round(weight / scale));
+        }
+    }
+
+    /**
+     * Reads network written by {@link #save(Path)}
+     * @param path file to read
+     * @return network
+     * @throws IOException if file cannot be read or is not a weights file
+     */
+    public static NTupleNetwork load(Path path) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if(in.readInt() != MAGIC) throw new IOException("Not a Connect4 weights file: " + path);
+            if(in.readInt() != VERSION) throw new IOException("Unsupported weights file version: " + path);
+            int rows = in.readUnsignedByte();
+            int columns = in.readUnsignedByte();
+            int tupleLength = in.readUnsignedByte();
+            int tupleCount = in.readUnsignedShort();
+            int[] bits = new int[tupleCount * tupleLength];
+            for(int i = 0; i < bits.length; i++) bits[i] = in.readUnsignedByte();
+            NTupleNetwork network = new NTupleNetwork(rows, columns, tupleLength, bits);
+            float scale = in.readFloat();
+            for(int i = 0; i < network.weights.length; i++) network.weights[i] = in.readShort() * scale;
+            return network;
+        }
+    }
+
+    /**
+     * @return network loaded from the file named by the {@value #WEIGHTS_PROPERTY} system property,
+     * or null if the property is unset or the file cannot be read
+     */
+    public static NTupleNetwork getDefault() { return DefaultHolder.NETWORK; }
+
+    /**
+     * Loads default network once, on first use
+     */
+    private static final class DefaultHolder {
+        private static final NTupleNetwork NETWORK = loadDefault();
+
+        private static NTupleNetwork loadDefault() {
+            String file = System.getProperty(WEIGHTS_PROPERTY);
+            if(file == null) return null;
+            try {
+                return load(Paths.get(file));
+            } catch (IOException e) {
+                System.out.println("Unable to load weights: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
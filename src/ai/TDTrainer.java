@@ -0,0 +1,190 @@
+package ai;
+
+import core.Bitboard;
+import core.Position;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Self-play TD(lambda) trainer for {@link NTupleNetwork}.
+ * <p>
+ * Each worker thread plays epsilon-greedy games against itself and, at the end of each game, moves the value of every
+ * position reached towards its lambda-return - the offline form of TD(lambda), which needs no eligibility traces.
+ * Workers share one weight table and update it without locks; occasional lost updates are harmless to training and
+ * avoid any contention between threads.
+ * <p>
+ * Usage: TDTrainer output [games] [threads] [alpha] [lambda] [epsilon] [tuples] [tupleLength] [rows] [columns]
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class TDTrainer {
+
+    // INSTANCE VARIABLES
+    /** Network being trained */
+    private final NTupleNetwork network;
+    /** Learning rate */
+    private final float alpha;
+    /** Trace decay */
+    private final float lambda;
+    /** Probability of a random exploratory move */
+    private final double epsilon;
+    /** Games completed across all threads */
+    private final AtomicLong gamesPlayed = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param network network to train
+     * @param alpha learning rate
+     * @param lambda trace decay, 0 for TD(0) up to 1 for Monte Carlo returns
+     * @param epsilon probability of a random exploratory move
+     */
+    public TDTrainer(NTupleNetwork network, float alpha, float lambda, double epsilon) {
+        this.network = network;
+        this.alpha = alpha;
+        this.lambda = lambda;
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Trains network
+     * @param games total number of self-play games
+     * @param threads number of worker threads
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    public void train(long games, int threads) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                Episode episode = new Episode(network.getRows(), network.getColumns());
+                while(gamesPlayed.getAndIncrement() < games) playAndLearn(episode);
+            }, "td-trainer-" + i);
+            workers[i].start();
+        }
+        for(Thread worker : workers) worker.join();
+    }
+
+    /**
+     * Plays one self-play game and updates weights from it
+     * @param episode per-thread game buffers
+     */
+    private void playAndLearn(Episode episode) {
+        Position position = episode.position;
+        position.reset();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int plies = 0;
+        float reward = 0;
+        while(true) {
+            int column;
+            if(random.nextDouble() < epsilon) {
+                column = Bitboard.randomLegalColumn(position.getLegalMoves(), random);
+            } else {
+                column = network.selectMove(position);
+            }
+            boolean won = position.isWinningMove(column);
+            position.play(column);
+            if(won) {
+                // the player who just moved is the one not now to move
+                reward = (position.getMoves() & 1) == 1 ? 1 : -1;
+                break;
+            }
+            if(position.isFull()) break;
+            episode.first[plies] = position.getFirst();
+            episode.second[plies] = position.getSecond();
+            episode.values[plies] = network.evaluate(episode.first[plies], episode.second[plies]);
+            plies++;
+        }
+        // lambda-returns computed backwards from the final reward
+        float target = reward;
+        for(int t = plies - 1; t >= 0; t--) {
+            float value = episode.values[t];
+            float error = target - value;
+            network.update(episode.first[t], episode.second[t], alpha * error * (1 - value * value));
+            target = (1 - lambda) * value + lambda * target;
+        }
+    }
+
+    /**
+     * Plays greedy network against uniformly random moves
+     * @param network network to test
+     * @param games number of games, alternating which side the network plays
+     * @return fraction of games won by the network
+     */
+    public static double winRateAgainstRandom(NTupleNetwork network, int games) {
+        Position position = new Position(network.getRows(), network.getColumns());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int wins = 0;
+        for(int g = 0; g < games; g++) {
+            position.reset();
+            int networkSide = g & 1;
+            while(!position.isFull()) {
+                int column;
+                if((position.getMoves() & 1) == networkSide) {
+                    column = network.selectMove(position);
+                } else {
+                    column = Bitboard.randomLegalColumn(position.getLegalMoves(), random);
+                }
+                if(position.isWinningMove(column)) {
+                    if((position.getMoves() & 1) == networkSide) wins++;
+                    break;
+                }
+                position.play(column);
+            }
+        }
+        return (double) wins / games;
+    }
+
+    /**
+     * Runs trainer
+     * @param args output file, games, threads, alpha, lambda, epsilon, tuples, tuple length, rows, columns
+     * @throws IOException if weights cannot be written
+     * @throws InterruptedException if interrupted while training
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 1) {
+            System.out.println("Usage: TDTrainer output [games] [threads] [alpha] [lambda] [epsilon] [tuples] [tupleLength] [rows] [columns]");
+            return;
+        }
+        Path output = Paths.get(args[0]);
+        long games      = args.length > 1 ? Long.parseLong(args[1]) : 200000;
+        int threads     = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        float alpha     = args.length > 3 ? Float.parseFloat(args[3]) : 0.002f;
+        float lambda    = args.length > 4 ? Float.parseFloat(args[4]) : 0.5f;
+        double epsilon  = args.length > 5 ? Double.parseDouble(args[5]) : 0.1;
+        int tuples      = args.length > 6 ? Integer.parseInt(args[6]) : 40;
+        int tupleLength = args.length > 7 ? Integer.parseInt(args[7]) : 8;
+        int rows        = args.length > 8 ? Integer.parseInt(args[8]) : 6;
+        int columns     = args.length > 9 ? Integer.parseInt(args[9]) : 7;
+
+        NTupleNetwork network = NTupleNetwork.randomWalks(rows, columns, tuples, tupleLength, 216L);
+        TDTrainer trainer = new TDTrainer(network, alpha, lambda, epsilon);
+        System.out.println("Before training: win rate against random " + winRateAgainstRandom(network, 1000));
+        long start = System.nanoTime();
+        trainer.train(games, threads);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Trained " + games + " games on " + threads + " threads in " + elapsed + " ms");
+        System.out.println("After training: win rate against random " + winRateAgainstRandom(network, 1000));
+        network.save(output);
+        System.out.println("Weights written to " + output);
+    }
+
+    /**
+     * Per-thread buffers for the positions of one game, so self-play does not allocate
+     */
+    private static final class Episode {
+        private final Position position;
+        private final long[] first;
+        private final long[] second;
+        private final float[] values;
+
+        private Episode(int rows, int columns) {
+            this.position = new Position(rows, columns);
+            this.first = new long[rows * columns];
+            this.second = new long[rows * columns];
+            this.values = new float[rows * columns];
+        }
+    }
+}
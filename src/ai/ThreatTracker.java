@@ -0,0 +1,243 @@
+package ai;
+
+import core.Bitboard;
+import core.Connect4;
+import core.GameListener;
+import core.Player;
+
+import java.util.Arrays;
+
+/**
+ * Window and threat counts for one position, updated incrementally as tokens are played and taken back.
+ * <p>
+ * For each player the tracker keeps the number of open windows holding one, two or three of that player's tokens and
+ * none of the opponent's, and the cells that would complete a window for that player (its threats). Playing or
+ * taking back a token only visits the windows through that cell, at most 13 on the standard board, so static
+ * evaluation and immediate win and must-block checks never rescan the board.
+ * <p>
+ * A tracker can follow a game by being registered as a listener with {@link #attach(Connect4)}, and stops following
+ * it once the game is won or tied. Instances are not thread safe.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public final class ThreatTracker implements GameListener {
+
+    /** Evaluation weight of an open window by number of tokens in it */
+    private static final int[] WEIGHTS = {0, 1, 8, 64};
+
+    // INSTANCE VARIABLES
+    private final WindowTable table;
+    /** Bit set for the bottom cell of each column */
+    private final long bottomMask;
+    /** Bit set for every cell on the board */
+    private final long boardMask;
+    /** Tokens of each player in each window */
+    private final byte[][] windowTokens;
+    /** Windows holding k tokens of a player and none of the opponent's, indexed by player then k */
+    private final int[][] openWindows = new int[2][WindowTable.LENGTH + 1];
+    /** Open windows with three tokens that each empty cell would complete, indexed by player then bit index */
+    private final byte[][] threatCounts;
+    /** Empty cells completing a window, for each player */
+    private final long[] threats = new long[2];
+    /** Tokens of each player */
+    private final long[] tokens = new long[2];
+    /** Game followed, null if tracker is driven directly */
+    private Connect4 game;
+
+    /**
+     * Constructor for an empty board
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     */
+    public ThreatTracker(int rows, int columns) {
+        this.table = WindowTable.of(rows, columns);
+        this.boardMask = Bitboard.boardMask(rows, columns);
+        long bottom = 0;
+        for(int c = 0; c < columns; c++) bottom |= 1L << Bitboard.bitIndex(rows, c, 0);
+        this.bottomMask = bottom;
+        this.windowTokens = new byte[2][table.getWindowCount()];
+        this.threatCounts = new byte[2][(rows + 1) * columns];
+        reset();
+    }
+
+    /**
+     * Creates tracker for the current position of a game and registers it to follow every later move
+     * @param game game to follow
+     * @return tracker
+     */
+    public static ThreatTracker attach(Connect4 game) {
+        Connect4.Board board = game.getBoard();
+        ThreatTracker tracker = new ThreatTracker(board.getBoardRows(), board.getBoardColumns());
+        tracker.sync(board.getBitboard(0), board.getBitboard(1));
+        tracker.game = game;
+        game.addGameListener(tracker);
+        return tracker;
+    }
+
+    /**
+     * Stops following game
+     */
+    public void detach() {
+        if(game != null) game.removeGameListener(this);
+        game = null;
+    }
+
+    /** @return game followed, or null */
+    public Connect4 getGame() { return game; }
+
+    /**
+     * Clears board
+     */
+    public void reset() {
+        for(int p = 0; p < 2; p++) {
+            Arrays.fill(windowTokens[p], (byte) 0);
+            Arrays.fill(openWindows[p], 0);
+            Arrays.fill(threatCounts[p], (byte) 0);
+            openWindows[p][0] = table.getWindowCount();
+            threats[p] = 0;
+            tokens[p] = 0;
+        }
+    }
+
+    /**
+     * Replaces position with the given tokens, if it differs from the one tracked
+     * @param first packed tokens of first player
+     * @param second packed tokens of second player
+     */
+    public void sync(long first, long second) {
+        if(first == tokens[0] && second == tokens[1]) return;
+        reset();
+        for(long m = first; m != 0; m &= m - 1) play(0, Long.numberOfTrailingZeros(m));
+        for(long m = second; m != 0; m &= m - 1) play(1, Long.numberOfTrailingZeros(m));
+    }
+
+    /**
+     * Adds token - the cell must be empty, but need not be playable
+     * @param player 0 for first player, 1 for second
+     * @param bit bit index of cell
+     */
+    public void play(int player, int bit) {
+        int opponent = 1 - player;
+        byte[] own = windowTokens[player];
+        byte[] other = windowTokens[opponent];
+        long cell = 1L << bit;
+        long filled = tokens[0] | tokens[1] | cell;
+        for(int i = table.cellStart[bit], end = table.cellStart[bit + 1]; i < end; i++) {
+            int w = table.cellWindows[i];
+            int mine = own[w];
+            int theirs = other[w];
+            if(theirs == 0) {
+                openWindows[player][mine]--;
+                openWindows[player][mine + 1]++;
+                if(mine == 3) removeThreat(player, cell);
+                else if(mine == 2) addThreat(player, table.windowMasks[w] & ~filled);
+            }
+            if(mine == 0) {
+                // window was open for the opponent and is now dead
+                openWindows[opponent][theirs]--;
+                if(theirs == 3) removeThreat(opponent, cell);
+            }
+            own[w] = (byte) (mine + 1);
+        }
+        tokens[player] |= cell;
+    }
+
+    /**
+     * Takes back token
+     * @param player 0 for first player, 1 for second
+     * @param bit bit index of cell holding one of player's tokens
+     */
+    public void undo(int player, int bit) {
+        int opponent = 1 - player;
+        byte[] own = windowTokens[player];
+        byte[] other = windowTokens[opponent];
+        long cell = 1L << bit;
+        tokens[player] &= ~cell;
+        long filled = tokens[0] | tokens[1] | cell;
+        for(int i = table.cellStart[bit], end = table.cellStart[bit + 1]; i < end; i++) {
+            int w = table.cellWindows[i];
+            int mine = own[w] - 1;
+            int theirs = other[w];
+            if(theirs == 0) {
+                openWindows[player][mine + 1]--;
+                openWindows[player][mine]++;
+                if(mine == 3) addThreat(player, cell);
+                else if(mine == 2) removeThreat(player, table.windowMasks[w] & ~filled);
+            }
+            if(mine == 0) {
+                openWindows[opponent][theirs]++;
+                if(theirs == 3) addThreat(opponent, cell);
+            }
+            own[w] = (byte) mine;
+        }
+    }
+
+    /**
+     * @param player 0 for first player, 1 for second
+     * @return empty cells that would complete four in a row for player
+     */
+    public long getThreats(int player) { return threats[player]; }
+
+    /**
+     * @param player 0 for first player, 1 for second
+     * @param count tokens in window, 0 to 4
+     * @return windows holding count of player's tokens and none of the opponent's
+     */
+    public int getOpenWindows(int player, int count) { return openWindows[player][count]; }
+
+    /**
+     * @param player 0 for first player, 1 for second
+     * @return packed tokens of player
+     */
+    public long getTokens(int player) { return tokens[player]; }
+
+    /** @return bit set for the cell each legal move would fill */
+    public long getPlayable() { return ((tokens[0] | tokens[1]) + bottomMask) & boardMask; }
+
+    /**
+     * @param player 0 for first player, 1 for second
+     * @return true if player has four in a row
+     */
+    public boolean hasWon(int player) { return openWindows[player][WindowTable.LENGTH] > 0; }
+
+    /**
+     * @param player 0 for first player, 1 for second
+     * @return heuristic value of position for player - weighted open windows of player less those of the opponent
+     */
+    public int evaluate(int player) {
+        int[] own = openWindows[player];
+        int[] other = openWindows[1 - player];
+        int score = 0;
+        for(int k = 1; k < WindowTable.LENGTH; k++) score += WEIGHTS[k] * (own[k] - other[k]);
+        return score;
+    }
+
+    @Override
+    public void moveApplied(Connect4 game, Player player, int row, int column) {
+        int rows = table.getRows();
+        // first player moves on even counts - the move just applied is already counted
+        int side = (game.getBoard().getMovesPlayed() - 1) & 1;
+        play(side, Bitboard.bitIndex(rows, column - 1, rows - row));
+    }
+
+    @Override
+    public void gameWon(Connect4 game, Player winner) { detach(); }
+
+    @Override
+    public void gameTied(Connect4 game) { detach(); }
+
+    @Override
+    public void gameRestarted(Connect4 game) { reset(); }
+
+    // HELPER METHODS
+
+    private void addThreat(int player, long cell) {
+        int bit = Long.numberOfTrailingZeros(cell);
+        if(threatCounts[player][bit]++ == 0) threats[player] |= cell;
+    }
+
+    private void removeThreat(int player, long cell) {
+        int bit = Long.numberOfTrailingZeros(cell);
+        if(--threatCounts[player][bit] == 0) threats[player] &= ~cell;
+    }
+}
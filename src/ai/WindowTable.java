@@ -0,0 +1,115 @@
+package ai;
+
+import core.Bitboard;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every four-in-a-row window on one board geometry, and the windows passing through each cell - built once per
+ * geometry and shared.
+ * <p>
+ * Cells are numbered by their bit index in the packed layout described in {@link Bitboard}. The windows through each
+ * cell are stored back to back in one array, so walking them after a move touches no other memory.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public final class WindowTable {
+
+    /** Cells in a window */
+    public static final int LENGTH = 4;
+    /** Column and row steps of the four line directions - vertical, horizontal and both diagonals */
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    /** Tables built so far, keyed by rows and columns */
+    private static final ConcurrentHashMap<Integer, WindowTable> TABLES = new ConcurrentHashMap<>();
+
+    // INSTANCE VARIABLES
+    private final int rows;
+    private final int columns;
+    /** Bit set for each cell of each window */
+    final long[] windowMasks;
+    /** Start of each cell's run in cellWindows, indexed by bit index, with one extra entry marking the end */
+    final int[] cellStart;
+    /** Windows through each cell, one run per cell */
+    final int[] cellWindows;
+
+    /**
+     * Constructor
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     */
+    private WindowTable(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        long[] masks = new long[4 * rows * columns];
+        int count = 0;
+        for(int[] direction : DIRECTIONS) {
+            for(int column = 0; column < columns; column++) {
+                for(int row = 0; row < rows; row++) {
+                    int endColumn = column + 3 * direction[0];
+                    int endRow = row + 3 * direction[1];
+                    if(endColumn >= columns || endRow < 0 || endRow >= rows) continue;
+                    long mask = 0;
+                    for(int k = 0; k < LENGTH; k++)
+                        mask |= 1L << Bitboard.bitIndex(rows, column + k * direction[0], row + k * direction[1]);
+                    masks[count++] = mask;
+                }
+            }
+        }
+        this.windowMasks = Arrays.copyOf(masks, count);
+
+        int bits = (rows + 1) * columns;
+        this.cellStart = new int[bits + 1];
+        for(long mask : windowMasks)
+            for(long m = mask; m != 0; m &= m - 1) cellStart[Long.numberOfTrailingZeros(m) + 1]++;
+        for(int bit = 0; bit < bits; bit++) cellStart[bit + 1] += cellStart[bit];
+        this.cellWindows = new int[count * LENGTH];
+        int[] fill = Arrays.copyOf(cellStart, bits);
+        for(int w = 0; w < count; w++)
+            for(long m = windowMasks[w]; m != 0; m &= m - 1) cellWindows[fill[Long.numberOfTrailingZeros(m)]++] = w;
+    }
+
+    /**
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @return shared table for geometry
+     */
+    public static WindowTable of(int rows, int columns) {
+        if(rows < 1 || columns < 1 || !Bitboard.fits(rows, columns))
+            throw new IllegalArgumentException("Unsupported board size " + rows + "x" + columns);
+        return TABLES.computeIfAbsent(rows << 16 | columns, key -> new WindowTable(rows, columns));
+    }
+
+    /** @return number of rows on board */
+    public int getRows() { return rows; }
+
+    /** @return number of columns on board */
+    public int getColumns() { return columns; }
+
+    /** @return number of windows on board */
+    public int getWindowCount() { return windowMasks.length; }
+
+    /**
+     * @param window window index
+     * @return bit set for each cell of window
+     */
+    public long getWindowMask(int window) { return windowMasks[window]; }
+
+    /**
+     * @param bit bit index of cell
+     * @return index in {@link #getCellWindow(int)} of the first window through cell
+     */
+    public int getCellStart(int bit) { return cellStart[bit]; }
+
+    /**
+     * @param bit bit index of cell
+     * @return index in {@link #getCellWindow(int)} just past the last window through cell
+     */
+    public int getCellEnd(int bit) { return cellStart[bit + 1]; }
+
+    /**
+     * @param index position in the run of windows of some cell
+     * @return window index
+     */
+    public int getCellWindow(int index) { return cellWindows[index]; }
+}
@@ -0,0 +1,75 @@
+package analysis;
+
+import core.Connect4;
+import core.Connect4ComputerPlayer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark comparing per-position cost of {@link BatchWinDetector} against calling
+ * {@link Connect4.Board#winCondition()} and {@link Connect4.Board#tieCondition()} in a loop.
+ * Positions are generated by random play stopped after a random number of moves.
+ * <p>
+ * Usage: BatchWinBenchmark [positions] [rounds]
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class BatchWinBenchmark {
+
+    /**
+     * Runs benchmark
+     * @param args number of positions, number of timed rounds
+     */
+    public static void main(String[] args) {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Connect4.Board[] boards = new Connect4.Board[positions];
+        long[] first = new long[positions];
+        long[] second = new long[positions];
+        for(int i = 0; i < positions; i++) {
+            Connect4 game = new Connect4(Connect4.uiType.CONSOLE);
+            game.setPlayers(new Connect4ComputerPlayer("X", "Red"), new Connect4ComputerPlayer("O", "Yellow"));
+            int moves = ThreadLocalRandom.current().nextInt(43);
+            for(int m = 0; m < moves && game.getStatus() == Connect4.GameStatus.IN_PROGRESS; m++)
+                game.facilitateComputerTurn();
+            boards[i] = game.getBoard();
+            first[i] = boards[i].getBitboard(0);
+            second[i] = boards[i].getBitboard(1);
+        }
+        int rows = boards[0].getBoardRows();
+        BatchWinDetector detector = new BatchWinDetector(rows, boards[0].getBoardColumns());
+        byte[] results = new byte[positions];
+
+        // results must agree before timing means anything
+        detector.evaluate(first, second, 0, positions, results);
+        for(int i = 0; i < positions; i++) {
+            boolean won = results[i] == BatchWinDetector.FIRST_WON || results[i] == BatchWinDetector.SECOND_WON;
+            if(won != boards[i].winCondition() || (!won && (results[i] == BatchWinDetector.TIED) != boards[i].tieCondition()))
+                throw new IllegalStateException("Batch result disagrees with board at position " + i);
+        }
+
+        long sink = 0;
+        for(int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            for(Connect4.Board board : boards) {
+                if(board.winCondition()) sink += 1;
+                else if(board.tieCondition()) sink += 3;
+            }
+            long scalar = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(int i = 0; i < positions; i++) sink += detector.evaluate(first[i], second[i]);
+            long single = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            detector.evaluate(first, second, 0, positions, results);
+            long batch = System.nanoTime() - start;
+            for(byte result : results) sink += result;
+
+            System.out.printf("round %2d  winCondition loop %7.2f ns/pos  packed single %6.2f ns/pos  batch %6.2f ns/pos%n",
+                    r + 1, (double) scalar / positions, (double) single / positions, (double) batch / positions);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+}
@@ -0,0 +1,345 @@
+package broadcast;
+
+import core.Connect4;
+import core.GameListener;
+import core.Player;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans out a live Connect4 game to any number of spectators.
+ * <p>
+ * Each spectator receives a one-time snapshot followed by one-byte deltas. Deltas are written by the game thread
+ * into a single ring buffer shared by all spectators of the game and delivered by a small pool of fan-out threads,
+ * so the game never waits on a viewer. A spectator that falls more than a ring's worth of deltas behind is sent a
+ * fresh snapshot, and is dropped once it has needed more than the allowed number of resyncs. Snapshots are written
+ * by the game thread into a small ring of preallocated slots, each guarded by a sequence stamp, and copied out by
+ * fan-out threads, so publishing allocates nothing.
+ * <p>
+ * Delta format: high bit clear is a move - bits 0-4 hold the column (1 based, up to the 31 columns a board allows),
+ * bit 5 the player index. High bit set is a control byte - {@link #RESTART}, {@link #TIED}, or {@link #WON} plus the
+ * winning player index.
+ * <p>
+ * Snapshot format: rows, columns, status byte (0 in progress, otherwise the matching control byte),
+ * then one byte per cell in row-major order from the top row - 0 empty, 1 first player, 2 second player.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class SpectatorBroadcaster implements GameListener {
+
+    /** Control byte - board was cleared */
+    public static final byte RESTART = (byte) 0x80;
+    /** Control byte - game ended in a tie */
+    public static final byte TIED = (byte) 0x81;
+    /** Control byte - game was won, low bit holds winning player index */
+    public static final byte WON = (byte) 0x82;
+    /** Snapshot header length preceding cell data */
+    public static final int SNAPSHOT_HEADER = 3;
+    /** Snapshot slots, a power of two - enough that a fan-out thread copying one is rarely lapped */
+    private static final int SNAPSHOT_SLOTS = 4;
+    /** Stamp of a snapshot slot the game thread is writing */
+    private static final long WRITING = -1;
+
+    // INSTANCE VARIABLES
+    /** Game being broadcast */
+    private final Connect4 game;
+    /** Shared delta ring, length is a power of two */
+    private final byte[] ring;
+    /** Mask for ring index from sequence number */
+    private final int mask;
+    /** Number of snapshot resyncs allowed before a spectator is dropped */
+    private final int maxResyncs;
+    /** Next sequence number to be published - single writer (game thread) */
+    private volatile long published;
+    /** Snapshot slots - slot {@code sequence & (SNAPSHOT_SLOTS - 1)} holds the board as of that sequence */
+    private final byte[][] snapshots;
+    /** Sequence held by each snapshot slot, or {@link #WRITING} while the game thread rewrites it */
+    private final AtomicLongArray snapshotStamps;
+    /** Game thread copy of the board cells used to build snapshots */
+    private final byte[] cells;
+    /** Moves made since last restart, determines player index of next move */
+    private int moveCount;
+    /** Subscriptions for each fan-out lane */
+    private final List<List<Subscription>> lanes;
+    /** Fan-out threads, one per lane */
+    private final Thread[] workers;
+    /** Round robin counter for lane assignment */
+    private int nextLane;
+    /** Cleared when broadcaster is closed */
+    private volatile boolean running;
+
+    /**
+     * Constructor, registers broadcaster with game and starts fan-out threads
+     * @param game Game to broadcast
+     * @param ringCapacity Number of deltas retained for lagging spectators - rounded up to a power of two
+     * @param laneCount Number of fan-out threads
+     * @param maxResyncs Snapshot resyncs allowed per spectator before it is dropped
+     */
+    public SpectatorBroadcaster(Connect4 game, int ringCapacity, int laneCount, int maxResyncs) {
+        if(ringCapacity < 1 || laneCount < 1) throw new IllegalArgumentException("Ring capacity and lane count must be positive");
+        int capacity = Integer.highestOneBit(ringCapacity);
+        if(capacity < ringCapacity) capacity <<= 1;
+        this.game = game;
+        this.ring = new byte[capacity];
+        this.mask = capacity - 1;
+        this.maxResyncs = maxResyncs;
+        Connect4.Board board = game.getBoard();
+        this.cells = new byte[board.getBoardRows() * board.getBoardColumns()];
+        copyBoard(board);
+        this.snapshots = new byte[SNAPSHOT_SLOTS][SNAPSHOT_HEADER + cells.length];
+        this.snapshotStamps = new AtomicLongArray(SNAPSHOT_SLOTS);
+        for(int i = 0; i < SNAPSHOT_SLOTS; i++) {
+            snapshots[i][0] = (byte) board.getBoardRows();
+            snapshots[i][1] = (byte) board.getBoardColumns();
+            snapshotStamps.set(i, WRITING);
+        }
+        writeSnapshot(0, currentStatus());
+        this.lanes = new CopyOnWriteArrayList<>();
+        this.workers = new Thread[laneCount];
+        this.running = true;
+        for(int i = 0; i < laneCount; i++) {
+            List<Subscription> lane = new CopyOnWriteArrayList<>();
+            lanes.add(lane);
+            workers[i] = new Thread(() -> fanOut(lane), game.getGameName() + "-spectator-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        game.addGameListener(this);
+    }
+
+    /**
+     * Adds spectator to broadcast - spectator is sent a snapshot on the next fan-out pass
+     * @param sink Spectator to send updates to
+     * @return subscription handle
+     */
+    public Subscription subscribe(SpectatorSink sink) {
+        Subscription subscription = new Subscription(sink);
+        int lane;
+        synchronized (lanes) {
+            lane = nextLane;
+            lanes.get(lane).add(subscription);
+            nextLane = (nextLane + 1) % lanes.size();
+        }
+        LockSupport.unpark(workers[lane]);
+        return subscription;
+    }
+
+    /**
+     * Removes spectator from broadcast
+     * @param subscription handle returned from {@link #subscribe(SpectatorSink)}
+     */
+    public void unsubscribe(Subscription subscription) {
+        for(List<Subscription> lane : lanes) lane.remove(subscription);
+    }
+
+    /**
+     * @return number of deltas published so far
+     */
+    public long getPublishedSequence() { return published; }
+
+    /**
+     * @return number of deltas retained in ring
+     */
+    public int getRingCapacity() { return ring.length; }
+
+    /**
+     * Stops fan-out threads and detaches from game
+     */
+    public void close() {
+        running = false;
+        game.removeGameListener(this);
+        for(Thread worker : workers) LockSupport.unpark(worker);
+    }
+
+    // GAME EVENTS - always called on the game thread
+
+    @Override
+    public void moveApplied(Connect4 game, Player player, int row, int column) {
+        int playerIndex = moveCount++ & 1;
+        cells[(row - 1) * game.getBoard().getBoardColumns() + column - 1] = (byte) (playerIndex + 1);
+        publish((byte) (column | (playerIndex << 5)), (byte) 0);
+    }
+
+    @Override
+    public void gameWon(Connect4 game, Player winner) {
+        byte control = (byte) (WON | ((moveCount - 1) & 1));
+        publish(control, control);
+    }
+
+    @Override
+    public void gameTied(Connect4 game) { publish(TIED, TIED); }
+
+    @Override
+    public void gameRestarted(Connect4 game) {
+        copyBoard(game.getBoard());
+        publish(RESTART, (byte) 0);
+    }
+
+    // HELPER METHODS
+
+    /**
+     * Writes delta to ring and the next snapshot slot before making the delta visible to fan-out threads, then wakes
+     * every lane
+     * @param delta Delta to publish
+     * @param status Status byte for the new snapshot
+     */
+    private void publish(byte delta, byte status) {
+        long sequence = published;
+        ring[(int) (sequence & mask)] = delta;
+        writeSnapshot(sequence + 1, status);
+        published = sequence + 1;
+        for(Thread worker : workers) LockSupport.unpark(worker);
+    }
+
+    /**
+     * Writes current cells into the snapshot slot for a sequence - stamped as being written first, so a fan-out
+     * thread copying the slot at the same time sees the stamp change and retries
+     * @param sequence Sequence of the next delta after this snapshot
+     * @param status Status byte for snapshot header
+     */
+    private void writeSnapshot(long sequence, byte status) {
+        int slot = (int) (sequence & (SNAPSHOT_SLOTS - 1));
+        snapshotStamps.set(slot, WRITING);
+        // keep the cell writes below from being seen before the slot is marked
+        VarHandle.storeStoreFence();
+        byte[] bytes = snapshots[slot];
+        bytes[2] = status;
+        System.arraycopy(cells, 0, bytes, SNAPSHOT_HEADER, cells.length);
+        snapshotStamps.set(slot, sequence);
+    }
+
+    /**
+     * Copies board tokens into cell array and sets move count - tokens are matched against the player to move,
+     * whose index follows from the number of tokens on the board
+     * @param board Board to copy
+     */
+    private void copyBoard(Connect4.Board board) {
+        Arrays.fill(cells, (byte) 0);
+        int columns = board.getBoardColumns();
+        int tokens = 0;
+        for(int i = 0; i < cells.length; i++) {
+            if(!board.getTokenAt(i / columns + 1, i % columns + 1).equals(" ")) tokens++;
+        }
+        moveCount = tokens;
+        if(tokens == 0) return;
+        String nextToken = game.getCurrentPlayer().getPlayerToken();
+        int nextIndex = tokens & 1;
+        for(int i = 0; i < cells.length; i++) {
+            String token = board.getTokenAt(i / columns + 1, i % columns + 1);
+            if(token.equals(" ")) continue;
+            cells[i] = (byte) ((token.equals(nextToken) ? nextIndex : 1 - nextIndex) + 1);
+        }
+    }
+
+    /**
+     * @return status byte for the game as it currently stands
+     */
+    private byte currentStatus() {
+        switch (game.getStatus()) {
+            case WON:
+                return (byte) (WON | ((moveCount - 1) & 1));
+            case TIED:
+                return TIED;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Fan-out loop for a single lane - delivers pending deltas to each spectator, parking when idle
+     * @param lane Subscriptions handled by this thread
+     */
+    private void fanOut(List<Subscription> lane) {
+        byte[] batch = new byte[ring.length];
+        byte[] snapshot = new byte[SNAPSHOT_HEADER + cells.length];
+        while(running) {
+            boolean progress = false;
+            for(Subscription subscription : lane) {
+                if(deliver(subscription, batch, snapshot)) progress = true;
+            }
+            // publish, subscribe and close unpark this thread, and a permit left by any of them ends the park at once
+            if(!progress) LockSupport.park(this);
+        }
+    }
+
+    /**
+     * Brings a single spectator up to date
+     * @param subscription Spectator to deliver to
+     * @param batch Scratch buffer sized to the ring
+     * @param snapshot Scratch buffer sized to a snapshot
+     * @return true if anything was delivered
+     */
+    private boolean deliver(Subscription subscription, byte[] batch, byte[] snapshot) {
+        long available = published;
+        long cursor = subscription.cursor;
+        if(cursor == available) return false;
+        if(cursor < 0 || available - cursor >= ring.length) return resync(subscription, snapshot);
+        int count = (int) (available - cursor);
+        for(int i = 0; i < count; i++) batch[i] = ring[(int) ((cursor + i) & mask)];
+        // the game thread may have lapped this spectator while we were copying - the fence keeps the ring reads
+        // above from being reordered after the check
+        VarHandle.loadLoadFence();
+        if(published - cursor >= ring.length) return resync(subscription, snapshot);
+        for(int i = 0; i < count; i++) subscription.sink.onDelta(cursor + i, batch[i]);
+        subscription.cursor = available;
+        return true;
+    }
+
+    /**
+     * Sends the latest snapshot to a spectator, or drops it if it has run out of resyncs
+     * @param subscription Spectator to resync
+     * @param snapshot Scratch buffer the snapshot is copied into
+     * @return true
+     */
+    private boolean resync(Subscription subscription, byte[] snapshot) {
+        if(subscription.cursor >= 0 && ++subscription.resyncs > maxResyncs) {
+            unsubscribe(subscription);
+            subscription.sink.onDropped();
+            return true;
+        }
+        long sequence = copySnapshot(snapshot);
+        subscription.sink.onSnapshot(sequence, snapshot);
+        subscription.cursor = sequence;
+        return true;
+    }
+
+    /**
+     * Copies the latest snapshot, retrying if the game thread rewrites its slot during the copy
+     * @param snapshot Buffer to copy into
+     * @return sequence of the next delta after the copied snapshot
+     */
+    private long copySnapshot(byte[] snapshot) {
+        while(true) {
+            long sequence = published;
+            int slot = (int) (sequence & (SNAPSHOT_SLOTS - 1));
+            if(snapshotStamps.get(slot) != sequence) continue;
+            System.arraycopy(snapshots[slot], 0, snapshot, 0, snapshot.length);
+            VarHandle.loadLoadFence();
+            if(snapshotStamps.get(slot) == sequence) return sequence;
+        }
+    }
+
+    /**
+     * Spectator handle and delivery position - only touched by the owning fan-out thread
+     */
+    public static final class Subscription {
+        /** Spectator receiving updates */
+        private final SpectatorSink sink;
+        /** Next sequence to deliver, -1 until the initial snapshot is sent */
+        private long cursor = -1;
+        /** Number of times spectator has fallen behind and been resent a snapshot */
+        private int resyncs;
+
+        private Subscription(SpectatorSink sink) { this.sink = sink; }
+
+        /**
+         * @return number of snapshot resyncs caused by spectator falling behind
+         */
+        public int getResyncs() { return resyncs; }
+    }
+}
@@ -0,0 +1,146 @@
+package broadcast;
+
+import core.Connect4;
+import metrics.LatencyHistogram;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local harness for spectator fan-out - plays random games with N simulated spectators attached and reports
+ * the latency from a move being made to each spectator receiving its delta.
+ * <p>
+ * Usage: SpectatorHarness [spectators] [lanes] [moves] [moveIntervalMicros] [ringCapacity]
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class SpectatorHarness {
+
+    /**
+     * Runs harness
+     * @param args spectators, lanes, moves, move interval in microseconds, ring capacity
+     * @throws InterruptedException if interrupted while waiting for spectators to drain
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int spectators   = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int lanes        = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int moves        = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        long intervalNs  = (args.length > 3 ? Long.parseLong(args[3]) : 50) * 1000L;
+        int ringCapacity = args.length > 4 ? Integer.parseInt(args[4]) : 1024;
+
+        Connect4 game = new Connect4(Connect4.uiType.CONSOLE);
+        game.setDefaultPlayers();
+        // each move publishes at most a move delta and a win/tie delta, plus a restart
+        long[] publishNanos = new long[moves * 3 + 3];
+        SpectatorBroadcaster broadcaster = new SpectatorBroadcaster(game, ringCapacity, lanes, 3);
+        // shared by every spectator - recorded from the fan-out threads
+        LatencyHistogram latencies = new LatencyHistogram();
+        LatencySink[] sinks = new LatencySink[spectators];
+        for(int i = 0; i < spectators; i++) {
+            sinks[i] = new LatencySink(publishNanos, latencies);
+            broadcaster.subscribe(sinks[i]);
+        }
+        waitForDrain(broadcaster, sinks, 0);
+
+        long start = System.nanoTime();
+        for(int i = 0; i < moves; i++) {
+            long sequence = broadcaster.getPublishedSequence();
+            long now = System.nanoTime();
+            publishNanos[(int) sequence] = now;
+            publishNanos[(int) sequence + 1] = now;
+            if(game.getStatus() != Connect4.GameStatus.IN_PROGRESS) {
+                game.restartGame();
+            } else {
+                int columns = game.getBoard().getBoardColumns();
+                while(!game.facilitateTurn(ThreadLocalRandom.current().nextInt(columns) + 1)) ;
+            }
+            while(System.nanoTime() - now < intervalNs) Thread.onSpinWait();
+        }
+        long elapsed = System.nanoTime() - start;
+        boolean drained = waitForDrain(broadcaster, sinks, 2000);
+        broadcaster.close();
+        report(broadcaster, sinks, latencies, elapsed, drained);
+    }
+
+    /**
+     * Waits for all live spectators to receive every published delta
+     * @param broadcaster Broadcaster to check
+     * @param sinks Spectators to check
+     * @param timeoutMillis Maximum time to wait, 0 to wait indefinitely
+     * @return true if all spectators caught up
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static boolean waitForDrain(SpectatorBroadcaster broadcaster, LatencySink[] sinks, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while(timeoutMillis == 0 || System.currentTimeMillis() < deadline) {
+            long target = broadcaster.getPublishedSequence();
+            boolean caughtUp = true;
+            for(LatencySink sink : sinks) {
+                if(!sink.dropped && sink.next.get() < target) {
+                    caughtUp = false;
+                    break;
+                }
+            }
+            if(caughtUp) return true;
+            Thread.sleep(1);
+        }
+        return false;
+    }
+
+    /**
+     * Prints delivery counts and latency percentiles across all spectators
+     */
+    private static void report(SpectatorBroadcaster broadcaster, LatencySink[] sinks, LatencyHistogram latencies,
+                               long elapsedNs, boolean drained) {
+        long deltas = 0, snapshots = 0, dropped = 0;
+        for(LatencySink sink : sinks) {
+            deltas += sink.deltas;
+            snapshots += sink.snapshots;
+            if(sink.dropped) dropped++;
+        }
+        System.out.println("Spectators:        " + sinks.length);
+        System.out.println("Deltas published:  " + broadcaster.getPublishedSequence() + " (ring " + broadcaster.getRingCapacity() + ")");
+        System.out.println("Deltas delivered:  " + deltas + " in " + (elapsedNs / 1_000_000) + " ms" + (drained ? "" : " (not fully drained)"));
+        System.out.println("Snapshots sent:    " + snapshots + " (" + (snapshots - sinks.length) + " resyncs)");
+        System.out.println("Spectators dropped: " + dropped);
+        System.out.println("Fan-out latency us: p50=" + latencies.getValueAtPercentile(50) / 1000.0 +
+                " p99=" + latencies.getValueAtPercentile(99) / 1000.0 +
+                " p99.9=" + latencies.getValueAtPercentile(99.9) / 1000.0 +
+                " max=" + latencies.getMax() / 1000.0);
+    }
+
+    /**
+     * Simulated spectator - records delivery latency of each delta
+     */
+    private static final class LatencySink implements SpectatorSink {
+        private final long[] publishNanos;
+        private final LatencyHistogram latencies;
+        /** Next expected sequence, -1 until the first snapshot - read by harness thread to detect drain */
+        private final AtomicLong next = new AtomicLong(-1);
+        private long deltas;
+        private long snapshots;
+        private volatile boolean dropped;
+
+        private LatencySink(long[] publishNanos, LatencyHistogram latencies) {
+            this.publishNanos = publishNanos;
+            this.latencies = latencies;
+        }
+
+        @Override
+        public void onSnapshot(long sequence, byte[] snapshot) {
+            snapshots++;
+            next.lazySet(sequence);
+        }
+
+        @Override
+        public void onDelta(long sequence, byte delta) {
+            latencies.record(System.nanoTime() - publishNanos[(int) sequence]);
+            deltas++;
+            next.lazySet(sequence + 1);
+        }
+
+        @Override
+        public void onDropped() { dropped = true; }
+    }
+}
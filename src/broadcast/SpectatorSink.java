@@ -0,0 +1,30 @@
+package broadcast;
+
+/**
+ * Receiver of a live game broadcast - typically a network connection to a single viewer.
+ * Callbacks are made from a broadcaster fan-out thread, never from the game thread.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public interface SpectatorSink {
+
+    /**
+     * Full board state - sent when the spectator joins or after it has fallen too far behind
+     * @param sequence Sequence number of the next delta the spectator will receive
+     * @param snapshot Encoded board, see {@link SpectatorBroadcaster} for format - reused by the broadcaster once
+     * this returns, so copy it to keep it
+     */
+    void onSnapshot(long sequence, byte[] snapshot);
+
+    /**
+     * Single one-byte update following the last snapshot or delta
+     * @param sequence Sequence number of this delta
+     * @param delta Encoded move or control byte, see {@link SpectatorBroadcaster} for format
+     */
+    void onDelta(long sequence, byte delta);
+
+    /**
+     * Called once if the spectator is dropped for repeatedly falling behind the game
+     */
+    default void onDropped() {}
+}
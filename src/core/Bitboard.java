@@ -0,0 +1,88 @@
+package core;
+
+import java.util.Random;
+
+/**
+ * Utilities for the packed bitboard representation of a Connect4 position.
+ * <p>
+ * Each player's tokens are held in a single long. Cells are numbered column by column from the bottom left, with
+ * one spare bit above every column so that shifted lines never wrap from the top of one column into the bottom of
+ * the next: the cell at column c (0 based) and row r (0 based from the bottom) is bit {@code c * (rows + 1) + r}.
+ * Boards up to {@code (rows + 1) * columns <= 64} fit, which includes the standard 6x7 and 7x8 boards.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public final class Bitboard {
+
+    /** Private constructor (Utility) */
+    private Bitboard() {}
+
+    /**
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @return true if a board of the given size fits the packed representation
+     */
+    public static boolean fits(int rows, int columns) { return (rows + 1) * columns <= 64; }
+
+    /**
+     * @param rows number of rows on board
+     * @param column column index, 0 based from the left
+     * @param row row index, 0 based from the bottom
+     * @return bit index of cell
+     */
+    public static int bitIndex(int rows, int column, int row) { return column * (rows + 1) + row; }
+
+    /**
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @return mask with a bit set for every cell on the board
+     */
+    public static long boardMask(int rows, int columns) {
+        long column = (1L << rows) - 1;
+        long mask = 0;
+        for(int c = 0; c < columns; c++) mask |= column << (c * (rows + 1));
+        return mask;
+    }
+
+    /**
+     * Picks a legal column uniformly at random
+     * @param legalMask legal columns, bit c set if column c (0 based) can be played
+     * @param random source of randomness, such as {@link java.util.concurrent.ThreadLocalRandom#current()}
+     * @return chosen column, 0 based
+     * @throws IllegalArgumentException if no column is legal
+     */
+    public static int randomLegalColumn(int legalMask, Random random) {
+        if(legalMask == 0) throw new IllegalArgumentException("No legal columns");
+        // clear a random number of the lowest legal columns, then take the lowest remaining one
+        int skip = random.nextInt(Integer.bitCount(legalMask));
+        for(int i = 0; i < skip; i++) legalMask &= legalMask - 1;
+        return Integer.numberOfTrailingZeros(legalMask);
+    }
+
+    /**
+     * Checks all lines of a single player's tokens at once
+     * @param tokens one player's tokens
+     * @param rows number of rows on board
+     * @return true if the tokens contain four in a row in any direction
+     */
+    public static boolean hasFour(long tokens, int rows) { return fours(tokens, rows) != 0; }
+
+    /**
+     * @param tokens one player's tokens
+     * @param rows number of rows on board
+     * @return mask with the lowest cell of every four in a row set, 0 if there are none
+     */
+    public static long fours(long tokens, int rows) {
+        int height = rows + 1;
+        // vertical, horizontal, diagonal down-right and diagonal up-right
+        long m = tokens & (tokens >>> 1);
+        long result = m & (m >>> 2);
+        m = tokens & (tokens >>> height);
+        result |= m & (m >>> (2 * height));
+        m = tokens & (tokens >>> (height - 1));
+        result |= m & (m >>> (2 * (height - 1)));
+        m = tokens & (tokens >>> (height + 1));
+        result |= m & (m >>> (2 * (height + 1)));
+        return result;
+    }
+}
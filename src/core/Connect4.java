@@ -1,9 +1,15 @@
 package core;
 
-import ui.Connect4GUI;
-import ui.Connect4TextConsole;
-
+import metrics.EngineMetrics;
+import metrics.FlightEvents;
+import metrics.GameOverEvent;
+import metrics.GameStartEvent;
+import metrics.TurnEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Connect4 Game
@@ -14,13 +20,40 @@ import java.util.Scanner;
 public class Connect4
 {
     /**
-     * Enumerable for UI type selection
+     * Enumerable for UI type selection - each UI class is only loaded when that UI is started, so headless and console
+     * processes never load JavaFX
      */
     public enum uiType {
-        CONSOLE,
-        GUI
+        CONSOLE("ui.Connect4TextConsole", "--console"),
+        GUI("ui.Connect4GUI", "--gui"),
+        HEADLESS("ui.Connect4Headless", "--headless"),
+        SCRIPT("ui.Connect4ScriptConsole", "--script");
+
+        /** Class providing a static startGame(Connect4) method for UI */
+        private final String className;
+        /** Command line flag selecting UI */
+        private final String flag;
+
+        uiType(String className, String flag) {
+            this.className = className;
+            this.flag = flag;
+        }
     }
 
+    /**
+     * Enumerable for state of game - computed once per move
+     */
+    public enum GameStatus {
+        IN_PROGRESS,
+        WON,
+        TIED
+    }
+
+    /** Row count of standard board. <a href="https://en.wikipedia.org/wiki/Connect_Four">Standard game definition</a> indicates 6 rows. */
+    public static final int DEFAULT_ROWS = 6;
+    /** Column count of standard board. <a href="https://en.wikipedia.org/wiki/Connect_Four">Standard game definition</a> indicates 7 columns. */
+    public static final int DEFAULT_COLUMNS = 7;
+
     //INSTANCE VARIABLES
     /** Maximum number of players that can play game */
     private final int MAX_PLAYERS = 2;
@@ -34,6 +67,10 @@ public class Connect4
     private Player winner;
     /** Current player */
     private int currentPlayerIndex;
+    /** Status of game, updated after each successful move */
+    private GameStatus status;
+    /** Listeners notified of game events */
+    private final List<GameListener> listeners;
     /** Indicates player is playing against computer */
     private boolean singlePlayerMode;
     /** Holds computer player object when single player mode is true, otherwise is null */
@@ -43,17 +80,59 @@ public class Connect4
     /** Initialization prompt */
     private static final String initPrompt = "Welcome to Connect4! Press 1 to play in the console or press 2 to play with a graphical interface.";
     /** Command line arguments */
-    private static String[] arguments;
+    private static String[] arguments = new String[0];
+    /** Command line usage */
+    private static final String usage = "Usage: Connect4 [--console | --gui | --headless [options] | --script (path | -) [options]]";
+    /** Source of unique game ids */
+    private static final AtomicLong nextGameId = new AtomicLong();
+    /** Unique id of game within this process, used to correlate diagnostics */
+    private final long gameId;
+    /** Number of rows on board - kept across restarts */
+    private final int boardRows;
+    /** Number of columns on board - kept across restarts */
+    private final int boardColumns;
+    /** Packed key of current position, see {@link Position#getKey()} - published after every move for other threads */
+    private volatile long positionKey;
 
     /**
-     * Public constructor - sets up UI mode
+     * Public constructor - sets up UI mode with a standard board
      */
     public Connect4(uiType uiSelection)
+    {
+        this(uiSelection, DEFAULT_ROWS, DEFAULT_COLUMNS);
+    }
+
+    /**
+     * Public constructor - sets up UI mode and board size
+     * @param uiSelection UI mode
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     */
+    public Connect4(uiType uiSelection, int rows, int columns)
+    {
+        this(uiSelection, rows, columns, nextGameId.incrementAndGet());
+    }
+
+    /**
+     * Public constructor - sets up UI mode and board size for a game restored under its original id
+     * @param uiSelection UI mode
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @param gameId id of saved game - ids given to new games afterwards will be higher
+     */
+    public Connect4(uiType uiSelection, int rows, int columns, long gameId)
     {
         this.players = new Player[MAX_PLAYERS];
         this.uiSelection = uiSelection;
         this.currentPlayerIndex = 0;
-        this.board = new Board();
+        this.board = new Board(rows, columns);
+        this.boardRows = rows;
+        this.boardColumns = columns;
+        this.status = GameStatus.IN_PROGRESS;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.gameId = gameId;
+        this.positionKey = this.board.getKey();
+        if(gameId > nextGameId.get()) nextGameId.accumulateAndGet(gameId, Math::max);
     }
 
     /**
@@ -63,6 +142,27 @@ public class Connect4
         return this.gameName;
     }
 
+    /**
+     * @return unique id of game within this process
+     */
+    public long getGameId() { return this.gameId; }
+
+    /**
+     * @return packed key of current position, see {@link Position#getKey()} - safe to read from any thread, and
+     * always a position the game has actually been in
+     */
+    public long getPositionKey() { return this.positionKey; }
+
+    /**
+     * @return number of rows on board - safe to read from any thread
+     */
+    public int getBoardRows() { return this.boardRows; }
+
+    /**
+     * @return number of columns on board - safe to read from any thread
+     */
+    public int getBoardColumns() { return this.boardColumns; }
+
     /**
      * @return computer player
      */
@@ -85,11 +185,34 @@ public class Connect4
      */
     public Player getWinner() { return this.winner; }
 
+    /**
+     * @param index 0 for the player who moves first, 1 for the second
+     * @return Player seated at index
+     */
+    public Player getPlayer(int index) { return this.players[index]; }
+
     /**
      * @return Player whose turn it is
      */
     public Player getCurrentPlayer() { return this.players[currentPlayerIndex]; }
 
+    /**
+     * @return status of game as of the last move
+     */
+    public GameStatus getStatus() { return this.status; }
+
+    /**
+     * Registers listener to be notified of game events
+     * @param listener listener to add
+     */
+    public void addGameListener(GameListener listener) { this.listeners.add(listener); }
+
+    /**
+     * Unregisters listener from game events
+     * @param listener listener to remove
+     */
+    public void removeGameListener(GameListener listener) { this.listeners.remove(listener); }
+
     /**
      * Sets up default players
      */
@@ -97,6 +220,7 @@ public class Connect4
         this.players[0] = new Player("Player 1", "X", "Red");
         this.players[1] = new Player("Player 2", "O", "Yellow");
         this.singlePlayerMode = false;
+        recordGameStart(false);
     }
 
     /**
@@ -109,56 +233,180 @@ public class Connect4
         this.players[1] = computer;
         this.computer = computer;
         singlePlayerMode = true;
+        recordGameStart(false);
+    }
+
+    /**
+     * Seats the given players - either may be a non-human player with its own move strategy
+     * @param first Player who moves first
+     * @param second Player who moves second
+     */
+    public void setPlayers(Player first, Player second) {
+        this.players[0] = first;
+        this.players[1] = second;
+        this.computer = second instanceof Connect4ComputerPlayer ? (Connect4ComputerPlayer) second : null;
+        this.singlePlayerMode = first.isHuman() != second.isHuman();
+        recordGameStart(false);
+    }
+
+    /**
+     * Turn utility that asks the current non-human player for its move and applies it
+     * @return column selected by the player
+     */
+    public int facilitateComputerTurn() {
+        Player player = players[currentPlayerIndex];
+        int selection = player.selectMove(this.board);
+        if(!facilitateTurn(selection))
+            throw new IllegalStateException(player.getPlayerName() + " selected illegal column " + selection);
+        return selection;
     }
 
     /**
-     * Turn utility that attempts to make player move and update current player
+     * Turn utility that attempts to make player move, update current player and game status
      * @param columnSelection The column selected by the current player
-     * @return true if turn was successful
+     * @return true if turn was successful, false if move was illegal or game is already over
      */
     public boolean facilitateTurn(int columnSelection) {
-        boolean successfulMove = this.board.makeMove(columnSelection, players[currentPlayerIndex]);
-        if(successfulMove) this.currentPlayerIndex = (this.currentPlayerIndex + 1) % MAX_PLAYERS;
+        TurnEvent event = FlightEvents.turnEnabled() ? new TurnEvent() : null;
+        if(!EngineMetrics.ENABLED && event == null) return applyTurn(columnSelection);
+        Player player = players[currentPlayerIndex];
+        if(event != null) event.begin();
+        long start = System.nanoTime();
+        boolean successfulMove = applyTurn(columnSelection);
+        if(EngineMetrics.ENABLED) EngineMetrics.recordTurn(System.nanoTime() - start, successfulMove);
+        if(event != null) {
+            event.gameId = this.gameId;
+            event.player = player.getPlayerName();
+            event.column = columnSelection;
+            event.successful = successfulMove;
+            event.commit();
+        }
         return successfulMove;
     }
 
     /**
-     * Checks for win condition and sets winner player variable if won
-     * @return true if game won
+     * Applies move for current player and updates current player and game status
+     * @param columnSelection The column selected by the current player
+     * @return true if turn was successful
      */
-    public boolean gameWon() {
-        boolean gameWon = this.board.winCondition();
-        if(gameWon) this.winner = players[(this.currentPlayerIndex + 1) % MAX_PLAYERS];
-        return gameWon;
+    private boolean applyTurn(int columnSelection) {
+        if(this.status != GameStatus.IN_PROGRESS) return false;
+        Player player = players[currentPlayerIndex];
+        boolean successfulMove = this.board.makeMove(columnSelection, player);
+        if(successfulMove) {
+            this.currentPlayerIndex = (this.currentPlayerIndex + 1) % MAX_PLAYERS;
+            this.positionKey = this.board.getKey();
+            updateStatus(player);
+        }
+        return successfulMove;
     }
 
     /**
-     * Checks for tie
+     * @return true if game won
+     */
+    public boolean gameWon() { return this.status == GameStatus.WON; }
+
+    /**
      * @return true if game is tie
      */
-    public boolean gameTied() { return this.board.tieCondition(); }
+    public boolean gameTied() { return this.status == GameStatus.TIED; }
 
     /**
      * Starts game instance
      */
     public void startGame() {
-        switch (this.uiSelection) {
-            case CONSOLE:
-                Connect4TextConsole.startGame(this);
-                break;
-            case GUI:
-                Connect4GUI.startGame(this);
-                break;
+        try {
+            Class.forName(this.uiSelection.className).getMethod("startGame", Connect4.class).invoke(null, this);
+        } catch (InvocationTargetException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if(e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException("Unable to start " + this.uiSelection + " UI", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to start " + this.uiSelection + " UI", e);
         }
     }
 
+    /**
+     * @return command line arguments game was started with
+     */
+    public static String[] getArguments() { return arguments.clone(); }
+
+    /**
+     * Replaces position with the given tokens without replaying the moves - the player to move, status and winner
+     * follow from the tokens. Players must be set first. Listeners are not notified.
+     * @param firstTokens packed tokens of first player, see {@link Bitboard} for layout
+     * @param secondTokens packed tokens of second player
+     */
+    public void restorePosition(long firstTokens, long secondTokens) {
+        this.board.restore(firstTokens, secondTokens);
+        this.currentPlayerIndex = this.board.getMovesPlayed() % MAX_PLAYERS;
+        this.status = GameStatus.IN_PROGRESS;
+        this.winner = null;
+        if(Bitboard.hasFour(firstTokens, this.boardRows)) {
+            this.status = GameStatus.WON;
+            this.winner = players[0];
+        } else if(Bitboard.hasFour(secondTokens, this.boardRows)) {
+            this.status = GameStatus.WON;
+            this.winner = players[1];
+        } else if(this.board.tieCondition()) {
+            this.status = GameStatus.TIED;
+        }
+        this.positionKey = this.board.getKey();
+    }
+
     /**
      * Utility to clear game board and reset game state
      */
     public void restartGame() {
         this.board = null;
-        this.board = new Board();
+        this.board = new Board(this.boardRows, this.boardColumns);
         this.currentPlayerIndex = 0;
+        this.status = GameStatus.IN_PROGRESS;
+        this.winner = null;
+        this.positionKey = this.board.getKey();
+        recordGameStart(true);
+        for(GameListener listener : listeners) listener.gameRestarted(this);
+    }
+
+    /**
+     * Emits flight recorder event for game start, if enabled
+     * @param restart true if an existing game is being restarted
+     */
+    private void recordGameStart(boolean restart) {
+        if(!FlightEvents.gameStartEnabled()) return;
+        GameStartEvent event = new GameStartEvent();
+        event.gameId = this.gameId;
+        event.restart = restart;
+        event.singlePlayer = this.singlePlayerMode;
+        event.commit();
+    }
+
+    /**
+     * Checks board for win or tie once after a move and notifies listeners of the result
+     * @param player Player who made the last move
+     */
+    private void updateStatus(Player player) {
+        int row = this.board.getLastMoveRow();
+        int column = this.board.getLastMoveColumn();
+        if(this.board.winCondition()) {
+            this.status = GameStatus.WON;
+            this.winner = player;
+        } else if(this.board.tieCondition()) {
+            this.status = GameStatus.TIED;
+        }
+        if(this.status != GameStatus.IN_PROGRESS && FlightEvents.gameOverEnabled()) {
+            GameOverEvent event = new GameOverEvent();
+            event.gameId = this.gameId;
+            event.result = this.status.name();
+            event.winner = this.winner == null ? null : this.winner.getPlayerName();
+            event.moves = this.board.getMovesPlayed();
+            event.commit();
+        }
+        for(GameListener listener : listeners) {
+            listener.moveApplied(this, player, row, column);
+            if(this.status == GameStatus.WON) listener.gameWon(this, player);
+            else if(this.status == GameStatus.TIED) listener.gameTied(this);
+        }
     }
 
     /**
@@ -166,21 +414,52 @@ public class Connect4
      */
     public class Board {
         // INSTANCE VARIABLES
-        /** Row count for board construction. <a href="https://en.wikipedia.org/wiki/Connect_Four">Standard game definition</a> indicates 6 rows. */
-        private final int BOARD_ROWS = 6;
-        /** Row count for board construction. <a href="https://en.wikipedia.org/wiki/Connect_Four">Standard game definition</a> indicates 7 columns. */
-        private final int BOARD_COLUMNS = 7;
+        /** Row count for board construction */
+        private final int BOARD_ROWS;
+        /** Column count for board construction */
+        private final int BOARD_COLUMNS;
         /** Counter for number of moves remaining */
         private int movesRemaining;
+        /** Row of last successful move, 0 if no move has been made */
+        private int lastMoveRow;
+        /** Column of last successful move, 0 if no move has been made */
+        private int lastMoveColumn;
+        /** Bitmask of columns that are not full - bit 0 is column 1 */
+        private int legalMoves;
+        /** Packed tokens of first and second player, see {@link Bitboard} for layout */
+        private final long[] bitboards;
+        /** Bit set for the bottom cell of each column, see {@link Bitboard} for layout */
+        private final long bottomMask;
         /** 2d Array representation of board */
         private final String[][] board;
 
         /**
-         * Constructor, instantiates board and default values
+         * Constructor, instantiates standard size board and default values
          */
         public Board() {
-            board          = new String[BOARD_ROWS][BOARD_COLUMNS];
+            this(DEFAULT_ROWS, DEFAULT_COLUMNS);
+        }
+
+        /**
+         * Constructor, instantiates board of given size and default values
+         * @param rows number of rows on board
+         * @param columns number of columns on board - boards must fit the packed layout described in {@link Bitboard}
+         */
+        public Board(int rows, int columns) {
+            if(rows < 1 || columns < 1 || columns >= Integer.SIZE || !Bitboard.fits(rows, columns))
+                throw new IllegalArgumentException("Unsupported board size " + rows + "x" + columns);
+            BOARD_ROWS     = rows;
+            BOARD_COLUMNS  = columns;
+            // rows allocated one by one - several times faster than a multi-dimensional array allocation when
+            // many boards are created at once, as on restore
+            board          = new String[BOARD_ROWS][];
+            for(int row = 0; row < BOARD_ROWS; row++) board[row] = new String[BOARD_COLUMNS];
             movesRemaining = BOARD_COLUMNS * BOARD_ROWS;
+            legalMoves     = (1 << BOARD_COLUMNS) - 1;
+            bitboards      = new long[MAX_PLAYERS];
+            long bottom = 0;
+            for(int c = 0; c < BOARD_COLUMNS; c++) bottom |= 1L << Bitboard.bitIndex(BOARD_ROWS, c, 0);
+            bottomMask     = bottom;
         }
 
         // PUBLIC METHODS
@@ -208,6 +487,46 @@ public class Connect4
             return board[row-1][column-1];
         }
 
+        /**
+         * @return game this board belongs to
+         */
+        public Connect4 getGame() { return Connect4.this; }
+
+        /**
+         * @return number of moves made on board
+         */
+        public int getMovesPlayed() { return BOARD_ROWS * BOARD_COLUMNS - this.movesRemaining; }
+
+        /**
+         * @return row index of last successful move, or 0 if no move has been made
+         */
+        public int getLastMoveRow() { return this.lastMoveRow; }
+
+        /**
+         * @return column index of last successful move, or 0 if no move has been made
+         */
+        public int getLastMoveColumn() { return this.lastMoveColumn; }
+
+        /**
+         * @param playerIndex 0 for the first player, 1 for the second
+         * @return packed tokens of player, see {@link Bitboard} for layout
+         */
+        public long getBitboard(int playerIndex) { return this.bitboards[playerIndex]; }
+
+        /**
+         * @return packed key of position, see {@link Position#getKey()}
+         */
+        public long getKey() {
+            long mask = bitboards[0] | bitboards[1];
+            long current = (getMovesPlayed() & 1) == 0 ? bitboards[0] : bitboards[1];
+            return current + mask + bottomMask;
+        }
+
+        /**
+         * @return bitmask of columns that are not full - bit 0 is column 1
+         */
+        public int getLegalMoves() { return this.legalMoves; }
+
         /**
          * @return number of columns on board
          */
@@ -233,8 +552,22 @@ public class Connect4
          * @return true if game has resulted in win condition
          */
         public boolean winCondition() {
+            if(!EngineMetrics.ENABLED) return checkForWin();
+            long start = System.nanoTime();
+            boolean won = checkForWin();
+            EngineMetrics.recordWinCheck(System.nanoTime() - start, won);
+            return won;
+        }
+
+        // HELPER METHODS
+
+        /**
+         * Scans board for a series of 4 tokens from one player
+         * @return true if game has resulted in win condition
+         */
+        private boolean checkForWin() {
             // check that enough moves have been played prior to checking win conditions
-            if(this.movesRemaining < 36) {
+            if(getMovesPlayed() >= 7) {
                 if(checkColumnsForWin()) return true;
                 if(checkRowsForWin()) return true;
                 if(checkDiagonalsLeftToRight()) return true;
@@ -243,8 +576,6 @@ public class Connect4
             return false;
         }
 
-        // HELPER METHODS
-
         /**
          * Checks each column for a series of 4 tokens from one player
          * @return true if a win is found in a column
@@ -253,7 +584,7 @@ public class Connect4
             String token;
             int connected;
             for(int j = 0; j < this.BOARD_COLUMNS; j++) {
-                for(int i = 0; i < ((this.BOARD_ROWS % 4) + 1); i++) {
+                for(int i = 0; i < this.BOARD_ROWS - 3; i++) {
                     if(board[i][j] != null) {
                         token = board[i][j];
                         connected = 1;
@@ -276,7 +607,7 @@ public class Connect4
             String token;
             int connected;
             for(int i = 0; i < this.BOARD_ROWS; i++) {
-                for(int j = 0; j < ((this.BOARD_COLUMNS % 4) + 1); j++) {
+                for(int j = 0; j < this.BOARD_COLUMNS - 3; j++) {
                     if(board[i][j] != null) {
                         token = board[i][j];
                         connected = 1;
@@ -298,8 +629,8 @@ public class Connect4
         private boolean checkDiagonalsLeftToRight() {
             String token;
             int connected;
-            for(int i = 0; i < ((this.BOARD_ROWS % 4) +1 ); i++) {
-                for(int j = 0; j < ((this.BOARD_COLUMNS % 4) + 1); j++) {
+            for(int i = 0; i < this.BOARD_ROWS - 3; i++) {
+                for(int j = 0; j < this.BOARD_COLUMNS - 3; j++) {
                     if(board[i][j] != null) {
                         token = board[i][j];
                         connected = 1;
@@ -321,8 +652,8 @@ public class Connect4
         private boolean checkDiagonalsRightToLeft() {
             String token;
             int connected;
-            for(int i = 0; i < ((this.BOARD_ROWS % 4) +1 ); i++) {
-                for(int j = BOARD_COLUMNS - 1; j >= (this.BOARD_COLUMNS % 4); j--) {
+            for(int i = 0; i < this.BOARD_ROWS - 3; i++) {
+                for(int j = BOARD_COLUMNS - 1; j >= 3; j--) {
                     if(board[i][j] != null) {
                         token = board[i][j];
                         connected = 1;
@@ -346,8 +677,30 @@ public class Connect4
             // validate column selected in range of board
             if(column < 1 || column > BOARD_COLUMNS) return false;
             // check to see if column is full
-            if(board[0][column-1] != null) return false;
-            return true;
+            return (legalMoves & (1 << (column - 1))) != 0;
+        }
+
+        /**
+         * Replaces board contents with the given tokens
+         * @param first packed tokens of first player
+         * @param second packed tokens of second player
+         */
+        private void restore(long first, long second) {
+            bitboards[0] = first;
+            bitboards[1] = second;
+            legalMoves = 0;
+            for(int column = 0; column < BOARD_COLUMNS; column++) {
+                for(int row = 0; row < BOARD_ROWS; row++) {
+                    long bit = 1L << Bitboard.bitIndex(BOARD_ROWS, column, BOARD_ROWS - 1 - row);
+                    if((first & bit) != 0) board[row][column] = players[0].getPlayerToken();
+                    else if((second & bit) != 0) board[row][column] = players[1].getPlayerToken();
+                    else board[row][column] = null;
+                }
+                if(board[0][column] == null) legalMoves |= 1 << column;
+            }
+            movesRemaining = BOARD_ROWS * BOARD_COLUMNS - Long.bitCount(first | second);
+            lastMoveRow = 0;
+            lastMoveColumn = 0;
         }
 
         /**
@@ -360,19 +713,42 @@ public class Connect4
             while(board[row][column-1] != null)
                 row--;
             board[row][column-1] = player.getPlayerToken();
+            // first player moves on even counts - the same instance may hold both seats
+            int playerIndex = getMovesPlayed() & 1;
+            bitboards[playerIndex] |= 1L << Bitboard.bitIndex(BOARD_ROWS, column - 1, BOARD_ROWS - 1 - row);
+            if(row == 0) legalMoves &= ~(1 << (column - 1));
+            lastMoveRow = row + 1;
+            lastMoveColumn = column;
         }
     }
 
     /**
      * Entry point of game
-     * @param args Not used at this point
+     * @param args UI flag, followed by options for that UI - prompts for UI choice if no flag is given
      */
     public static void main(String args[]) {
         arguments = args;
-        Connect4 game = new Connect4(getUIChoice());
+        uiType choice = args.length > 0 ? parseUIChoice(args[0]) : getUIChoice();
+        if(choice == null) {
+            System.err.println(usage);
+            System.exit(2);
+        }
+        Connect4 game = new Connect4(choice);
         game.startGame();
     }
 
+    /**
+     * Helper method to determine which UI should be used from a command line flag
+     * @param flag command line flag
+     * @return UI choice, or null if flag is not recognized
+     */
+    private static uiType parseUIChoice(String flag) {
+        for(uiType type : uiType.values()) {
+            if(type.flag.equals(flag)) return type;
+        }
+        return null;
+    }
+
     /**
      * Helper method to determine which UI should be used for the game via user input in console
      * @return UI choice
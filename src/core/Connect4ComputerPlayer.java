@@ -1,6 +1,13 @@
 package core;
 
-import java.util.Random;
+import ai.NTupleNetwork;
+import ai.ThreatTracker;
+import metrics.ComputerMoveEvent;
+import metrics.EngineMetrics;
+import metrics.FlightEvents;
+import solver.Tablebase;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Computer Player - used when user opts to play against computer in Connect4
@@ -12,13 +19,21 @@ public class Connect4ComputerPlayer extends Player {
     /**
      * Enumerable to set difficulty of computer
      */
-    enum ComputerDifficulty {easy, hard};
+    public enum ComputerDifficulty {easy, hard};
 
     // INSTANCE VARIABLES
     /** Connect 4 Board */
     Connect4.Board boardState;
     /** Difficulty level of computer */
     ComputerDifficulty difficulty;
+    /** Positions examined while choosing the last move, 0 if the move was not chosen by search */
+    long nodesSearched;
+    /** Position evaluator for hard difficulty, null if no weights are loaded */
+    NTupleNetwork evaluator;
+    /** Exact results near the end of the game for hard difficulty, null if no tablebase is loaded */
+    Tablebase tablebase;
+    /** Window and threat counts for the game being played at hard difficulty, kept up to date as moves are made */
+    ThreatTracker tracker;
 
     /**
      * Constructor that defaults difficulty to Easy
@@ -39,6 +54,22 @@ public class Connect4ComputerPlayer extends Player {
         this.playerColor = color;
         this.isHuman = false;
         this.difficulty = difficulty;
+        // load weights and tablebase when the player is created rather than on its first move
+        if(difficulty == ComputerDifficulty.hard) {
+            this.evaluator = NTupleNetwork.getDefault();
+            this.tablebase = Tablebase.getDefault();
+        }
+    }
+
+    /**
+     * Chooses move for the given board
+     * @param board Current game board
+     * @return Column selection for move
+     */
+    @Override
+    public int selectMove(Connect4.Board board) {
+        setBoardState(board);
+        return makeMove();
     }
 
     /**
@@ -46,6 +77,38 @@ public class Connect4ComputerPlayer extends Player {
      * @return integer of column selected for move - can exit game here if board state not properly transferred
      */
     public int makeMove() {
+        ComputerMoveEvent event = FlightEvents.computerMoveEnabled() ? new ComputerMoveEvent() : null;
+        if(!EngineMetrics.ENABLED && event == null) return chooseMove();
+        if(event != null) event.begin();
+        long start = System.nanoTime();
+        int selection = chooseMove();
+        if(EngineMetrics.ENABLED) EngineMetrics.recordAiDecision(System.nanoTime() - start);
+        if(event != null) {
+            event.gameId = this.boardState.getGame().getGameId();
+            event.difficulty = this.difficulty.name();
+            event.column = selection;
+            event.nodesSearched = this.nodesSearched;
+            event.commit();
+        }
+        return selection;
+    }
+
+    /**
+     * @return difficulty level of computer
+     */
+    public ComputerDifficulty getDifficulty() { return difficulty; }
+
+    /**
+     * @return positions examined while choosing the last move, 0 if the move was not chosen by search
+     */
+    public long getNodesSearched() { return nodesSearched; }
+
+    /**
+     * Chooses move according to difficulty
+     * @return integer of column selected for move - exits game if board state not properly transferred
+     */
+    private int chooseMove() {
+        this.nodesSearched = 0;
         try {
             switch (difficulty) {
                 case easy:
@@ -67,18 +130,97 @@ public class Connect4ComputerPlayer extends Player {
      */
     private int determineBestMove() throws InvalidBoardStateException {
         if(boardState == null) throw new InvalidBoardStateException("Board state not set for computer player");
-        // TODO: implement incentive to win/block opponent
-        return randomizeMove();
+        if(tablebase != null) {
+            // perfect play once the board is nearly full
+            int column = tablebase.selectMove(Position.of(boardState));
+            if(column >= 0) {
+                this.nodesSearched = Integer.bitCount(boardState.getLegalMoves());
+                return column + 1;
+            }
+        }
+        ThreatTracker threats = trackerFor(boardState);
+        // this player is the one to move - the same instance may hold both seats
+        int me = boardState.getMovesPlayed() & 1;
+        int opponent = 1 - me;
+        long playable = threats.getPlayable();
+        if(playable == 0) throw new InvalidBoardStateException("No legal moves remaining for computer player");
+        // take a win, otherwise block the opponent's - with two to block the game is lost whatever is played
+        long wins = threats.getThreats(me) & playable;
+        if(wins != 0) return columnOf(wins);
+        long blocks = threats.getThreats(opponent) & playable;
+        if(blocks != 0) return columnOf(blocks);
+        // never play directly beneath a cell that would win for the opponent, unless there is no other move
+        long safe = playable & ~(threats.getThreats(opponent) >>> 1);
+        if(safe == 0) safe = playable;
+
+        boolean useNetwork = evaluator != null
+                && evaluator.getRows() == boardState.getBoardRows()
+                && evaluator.getColumns() == boardState.getBoardColumns();
+        long best = 0;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for(long candidates = safe; candidates != 0; candidates &= candidates - 1) {
+            long move = candidates & -candidates;
+            int bit = Long.numberOfTrailingZeros(move);
+            threats.play(me, bit);
+            float value;
+            if(useNetwork) {
+                value = evaluator.evaluate(threats.getTokens(0), threats.getTokens(1));
+                if(me == 1) value = -value;
+            } else {
+                value = threats.evaluate(me);
+            }
+            threats.undo(me, bit);
+            // prefer columns nearer the centre among equal values
+            if(value > bestValue || value == bestValue && centreDistance(move) < centreDistance(best)) {
+                bestValue = value;
+                best = move;
+            }
+        }
+        this.nodesSearched = Long.bitCount(safe);
+        return columnOf(best);
+    }
+
+    /**
+     * @param board board being played
+     * @return tracker following the board's game, in step with the board
+     */
+    private ThreatTracker trackerFor(Connect4.Board board) {
+        if(tracker == null || tracker.getGame() != board.getGame()) {
+            if(tracker != null) tracker.detach();
+            tracker = ThreatTracker.attach(board.getGame());
+        } else {
+            // restored positions are set without notifying listeners
+            tracker.sync(board.getBitboard(0), board.getBitboard(1));
+        }
+        return tracker;
     }
 
     /**
-     * Selects a column at random to place token
+     * @param cells bit set for one or more cells
+     * @return column of the lowest cell, 1 based
+     */
+    private int columnOf(long cells) {
+        return Long.numberOfTrailingZeros(cells) / (boardState.getBoardRows() + 1) + 1;
+    }
+
+    /**
+     * @param cell bit set for one cell
+     * @return distance of cell's column from the centre of the board, doubled to stay whole
+     */
+    private int centreDistance(long cell) {
+        return Math.abs(2 * (columnOf(cell) - 1) - (boardState.getBoardColumns() - 1));
+    }
+
+    /**
+     * Selects a legal column at random to place token
      * @return Column selection for move
      * @throws InvalidBoardStateException
      */
     private int randomizeMove() throws InvalidBoardStateException {
         if(boardState == null) throw new InvalidBoardStateException("Board state not set for computer player");
-        return new Random().nextInt(this.boardState.getBoardColumns()) + 1;
+        int legalMoves = this.boardState.getLegalMoves();
+        if(legalMoves == 0) throw new InvalidBoardStateException("No legal moves remaining for computer player");
+        return Bitboard.randomLegalColumn(legalMoves, ThreadLocalRandom.current()) + 1;
     }
 
     /**
@@ -86,6 +228,11 @@ public class Connect4ComputerPlayer extends Player {
      * @param board Connect 4 board
      */
     public void setBoardState(Connect4.Board board) {
+        // stop following a game this player has moved on from
+        if(tracker != null && (board == null || tracker.getGame() != board.getGame())) {
+            tracker.detach();
+            tracker = null;
+        }
         this.boardState = board;
     }
 }
@@ -0,0 +1,38 @@
+package core;
+
+/**
+ * Listener for Connect4 game events - allows UIs, loggers and other observers to react to game state changes
+ * rather than polling the game for its status
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public interface GameListener {
+
+    /**
+     * Called after a move has been successfully applied to the board
+     * @param game Game the move was made in
+     * @param player Player who made the move
+     * @param row Row index the token landed in
+     * @param column Column index selected by the player
+     */
+    default void moveApplied(Connect4 game, Player player, int row, int column) {}
+
+    /**
+     * Called once when a move results in a win
+     * @param game Game that was won
+     * @param winner Winning player
+     */
+    default void gameWon(Connect4 game, Player winner) {}
+
+    /**
+     * Called once when a move results in a tie
+     * @param game Game that was tied
+     */
+    default void gameTied(Connect4 game) {}
+
+    /**
+     * Called after the game board and state have been reset
+     * @param game Game that was restarted
+     */
+    default void gameRestarted(Connect4 game) {}
+}
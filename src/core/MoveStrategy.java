@@ -0,0 +1,18 @@
+package core;
+
+/**
+ * Strategy for choosing moves on behalf of a non-human player. Implementations may be supplied to
+ * {@link Player#Player(String, String, String, MoveStrategy)} to plug in a bot without subclassing Player.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public interface MoveStrategy {
+
+    /**
+     * Chooses a move - implementations should pick from {@link Connect4.Board#getLegalMoves()} so the
+     * selection is always accepted
+     * @param board Current game board
+     * @return Column selection for move, 1 based
+     */
+    int selectMove(Connect4.Board board);
+}
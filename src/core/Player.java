@@ -5,13 +5,15 @@ package core;
  * @author Jesse Wheeler
  * @version 1.0
  */
-public class Player {
+public class Player implements MoveStrategy {
 
     //INSTANCE METHODS
     protected String playerName;
     protected String playerToken;
     protected String playerColor;
     protected boolean isHuman;
+    /** Strategy used to choose moves for non-human players, null for human players */
+    protected MoveStrategy strategy;
 
     /** Empty constructor */
     public Player() {}
@@ -29,6 +31,33 @@ public class Player {
         isHuman = true;
     }
 
+    /**
+     * Non-human player constructor
+     * @param name name of player
+     * @param token token used by player
+     * @param color token color used by player
+     * @param strategy strategy used to choose moves
+     */
+    public Player(String name, String token, String color, MoveStrategy strategy)
+    {
+        this.playerName  = name;
+        this.playerToken = token;
+        this.playerColor = color;
+        this.strategy    = strategy;
+        isHuman = false;
+    }
+
+    /**
+     * Chooses move using player's strategy
+     * @param board Current game board
+     * @return Column selection for move
+     */
+    @Override
+    public int selectMove(Connect4.Board board) {
+        if(strategy == null) throw new IllegalStateException(playerName + " has no move strategy");
+        return strategy.selectMove(board);
+    }
+
     /**
      * @return Player Token
      */
@@ -0,0 +1,293 @@
+package core;
+
+/**
+ * Compact mutable Connect4 position for search, training and analysis - two longs and a move counter, using the
+ * packed layout described in {@link Bitboard}. Like {@link Connect4.Board} the geometry is configurable, up to
+ * {@code (rows + 1) * columns <= 64}.
+ * <p>
+ * The position stores the tokens of the player to move and a mask of all tokens, so making a move is a handful of
+ * arithmetic operations. Columns are 0 based.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public final class Position {
+
+    // INSTANCE VARIABLES
+    /** Number of rows on board */
+    private final int rows;
+    /** Number of columns on board */
+    private final int columns;
+    /** Bit set for the bottom cell of each column */
+    private final long bottomMask;
+    /** Bit set for every cell on the board */
+    private final long boardMask;
+    /** Tokens of player to move */
+    private long current;
+    /** Tokens of both players */
+    private long mask;
+    /** Number of moves played */
+    private int moves;
+
+    /**
+     * Constructor for an empty board
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     */
+    public Position(int rows, int columns) {
+        if(!Bitboard.fits(rows, columns)) throw new IllegalArgumentException("Board too large for packed position");
+        this.rows = rows;
+        this.columns = columns;
+        this.boardMask = Bitboard.boardMask(rows, columns);
+        long bottom = 0;
+        for(int c = 0; c < columns; c++) bottom |= 1L << Bitboard.bitIndex(rows, c, 0);
+        this.bottomMask = bottom;
+    }
+
+    /**
+     * Copy constructor
+     * @param other position to copy
+     */
+    public Position(Position other) {
+        this.rows = other.rows;
+        this.columns = other.columns;
+        this.bottomMask = other.bottomMask;
+        this.boardMask = other.boardMask;
+        this.current = other.current;
+        this.mask = other.mask;
+        this.moves = other.moves;
+    }
+
+    /**
+     * @param board game board
+     * @return position matching board, with the player whose turn it is to move
+     */
+    public static Position of(Connect4.Board board) {
+        Position position = new Position(board.getBoardRows(), board.getBoardColumns());
+        position.set(board.getBitboard(0), board.getBitboard(1));
+        return position;
+    }
+
+    /**
+     * Replaces position with the given tokens - the player to move follows from the number of tokens
+     * @param first packed tokens of first player
+     * @param second packed tokens of second player
+     */
+    public void set(long first, long second) {
+        this.mask = first | second;
+        this.moves = Long.bitCount(mask);
+        this.current = (moves & 1) == 0 ? first : second;
+    }
+
+    /**
+     * Replaces position with the one a key was taken from
+     * @param key value of {@link #getKey()} for a position on this geometry
+     */
+    public void setKey(long key) {
+        int height = rows + 1;
+        long filled = 0;
+        // the top set bit of each column of the key sits just above its tokens
+        for(int c = 0; c < columns; c++) {
+            long column = (key >>> (c * height)) & ((1L << height) - 1);
+            filled |= (Long.highestOneBit(column) - 1) << (c * height);
+        }
+        this.mask = filled;
+        this.current = key & filled;
+        this.moves = Long.bitCount(filled);
+    }
+
+    /**
+     * Clears board
+     */
+    public void reset() {
+        current = 0;
+        mask = 0;
+        moves = 0;
+    }
+
+    /** @return number of rows on board */
+    public int getRows() { return rows; }
+
+    /** @return number of columns on board */
+    public int getColumns() { return columns; }
+
+    /** @return number of moves played */
+    public int getMoves() { return moves; }
+
+    /** @return tokens of player to move */
+    public long getCurrent() { return current; }
+
+    /** @return tokens of both players */
+    public long getMask() { return mask; }
+
+    /** @return tokens of first player */
+    public long getFirst() { return (moves & 1) == 0 ? current : current ^ mask; }
+
+    /** @return tokens of second player */
+    public long getSecond() { return (moves & 1) == 0 ? current ^ mask : current; }
+
+    /** @return true if every cell is filled */
+    public boolean isFull() { return moves == rows * columns; }
+
+    /**
+     * @return key unique to this position on this geometry - fits in 64 bits but may be negative
+     */
+    public long getKey() { return current + mask + bottomMask; }
+
+    /**
+     * @return key of this position reflected left to right - equal to {@link #getKey()} for symmetric positions
+     */
+    public long getMirroredKey() { return mirror(current) + mirror(mask) + bottomMask; }
+
+    /**
+     * @return bit set for the cell each legal move would fill
+     */
+    public long getPossible() { return (mask + bottomMask) & boardMask; }
+
+    /**
+     * @return bitmask of columns that are not full - bit 0 is column 0
+     */
+    public int getLegalMoves() {
+        int legal = 0;
+        for(int c = 0; c < columns; c++) if(canPlay(c)) legal |= 1 << c;
+        return legal;
+    }
+
+    /**
+     * @param column column index
+     * @return true if column is not full
+     */
+    public boolean canPlay(int column) { return (mask & topMask(column)) == 0; }
+
+    /**
+     * Plays a token for the player to move - column must be playable
+     * @param column column index
+     */
+    public void play(int column) {
+        current ^= mask;
+        mask |= mask + bottomMask(column);
+        moves++;
+    }
+
+    /**
+     * Takes back the last token played in a column - must be the last move played
+     * @param column column index
+     */
+    public void undo(int column) {
+        mask ^= Long.highestOneBit(mask & columnMask(column));
+        current ^= mask;
+        moves--;
+    }
+
+    /**
+     * Plays a token for the player to move
+     * @param move single bit for the cell to fill, taken from {@link #getPossible()}
+     */
+    public void playMove(long move) {
+        current ^= mask;
+        mask |= move;
+        moves++;
+    }
+
+    /**
+     * Takes back a move played with {@link #playMove(long)} - must be the last move played
+     * @param move single bit for the cell to empty
+     */
+    public void undoMove(long move) {
+        mask ^= move;
+        current ^= mask;
+        moves--;
+    }
+
+    /**
+     * Cells the player to move can fill without handing the opponent an immediate win - assumes the player to move
+     * cannot win immediately. If the opponent threatens more than one win, no move saves the game and 0 is returned.
+     * @return bit set for the cell of each non-losing move
+     */
+    public long getNonLosingMoves() {
+        long possible = getPossible();
+        long opponentWins = winningCells(current ^ mask);
+        long forced = possible & opponentWins;
+        if(forced != 0) {
+            if((forced & (forced - 1)) != 0) return 0;
+            possible = forced;
+        }
+        // never play directly beneath an opponent winning cell
+        return possible & ~(opponentWins >>> 1);
+    }
+
+    /**
+     * @param move single bit for a cell the player to move could fill
+     * @return number of winning cells the player to move would have after the move - used for move ordering
+     */
+    public int moveScore(long move) { return Long.bitCount(winningCells(current | move)); }
+
+    /**
+     * @param column column index
+     * @return bit set for every cell in column
+     */
+    public long getColumnMask(int column) { return columnMask(column); }
+
+    /**
+     * @param column playable column index
+     * @return true if playing column wins the game for the player to move
+     */
+    public boolean isWinningMove(int column) {
+        long tokens = current | ((mask + bottomMask(column)) & columnMask(column));
+        return Bitboard.hasFour(tokens, rows);
+    }
+
+    /**
+     * @return true if the player to move can win immediately
+     */
+    public boolean canWinNext() {
+        return (winningCells(current) & getPossible()) != 0;
+    }
+
+    /**
+     * @param tokens one player's tokens
+     * @return empty cells that would complete four in a row for that player
+     */
+    public long winningCells(long tokens) {
+        int h = rows + 1;
+        // vertical
+        long r = (tokens << 1) & (tokens << 2) & (tokens << 3);
+        // horizontal and both diagonals - each direction checks the three ways an empty cell can complete a line
+        for(int shift = h - 1; shift <= h + 1; shift++) {
+            long p = (tokens << shift) & (tokens << (2 * shift));
+            r |= p & (tokens << (3 * shift));
+            r |= p & (tokens >>> shift);
+            p = (tokens >>> shift) & (tokens >>> (2 * shift));
+            r |= p & (tokens << shift);
+            r |= p & (tokens >>> (3 * shift));
+        }
+        return r & (boardMask ^ mask);
+    }
+
+    /**
+     * @param row row index, 0 based from the bottom
+     * @param column column index
+     * @return 0 if cell is empty, 1 if it holds a first player token, 2 for a second player token
+     */
+    public int getCell(int row, int column) {
+        long bit = 1L << Bitboard.bitIndex(rows, column, row);
+        if((mask & bit) == 0) return 0;
+        return (getFirst() & bit) != 0 ? 1 : 2;
+    }
+
+    // HELPER METHODS
+
+    private long bottomMask(int column) { return 1L << Bitboard.bitIndex(rows, column, 0); }
+
+    private long topMask(int column) { return 1L << Bitboard.bitIndex(rows, column, rows - 1); }
+
+    private long columnMask(int column) { return ((1L << rows) - 1) << Bitboard.bitIndex(rows, column, 0); }
+
+    private long mirror(long tokens) {
+        int height = rows + 1;
+        long column = (1L << rows) - 1;
+        long mirrored = 0;
+        for(int c = 0, m = columns - 1; c < columns; c++, m--)
+            mirrored |= ((tokens >>> (c * height)) & column) << (m * height);
+        return mirrored;
+    }
+}
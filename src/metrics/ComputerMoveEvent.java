@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning a single computer player decision - event duration is the think time
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+@Name("connect4.ComputerMove")
+@Label("Computer Move")
+@Category("Connect4")
+@Description("Time taken by the computer player to choose a move")
+public class ComputerMoveEvent extends jdk.jfr.Event {
+
+    @Label("Game Id")
+    public long gameId;
+
+    @Label("Difficulty")
+    public String difficulty;
+
+    @Label("Column")
+    public int column;
+
+    @Label("Nodes Searched")
+    @Description("Positions examined while choosing the move, 0 when the move was not chosen by search")
+    public long nodesSearched;
+}
@@ -0,0 +1,115 @@
+package metrics;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hot-path instrumentation for the Connect4 engine, exposed as the JMX MBean {@value #OBJECT_NAME}.
+ * <p>
+ * Instrumentation is enabled with {@code -Dconnect4.metrics=true}. Callers guard each measurement with
+ * {@link #ENABLED}, a static final constant, so when disabled the JIT removes the timing code entirely and the
+ * MBean server is never loaded.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public final class EngineMetrics implements EngineMetricsMBean {
+
+    /** True when instrumentation is enabled for this JVM */
+    public static final boolean ENABLED = Boolean.getBoolean("connect4.metrics");
+    /** JMX object name metrics are registered under */
+    public static final String OBJECT_NAME = "connect4:type=EngineMetrics";
+    /** Singleton instance, null when disabled */
+    private static final EngineMetrics INSTANCE = ENABLED ? register(new EngineMetrics()) : null;
+
+    // INSTANCE VARIABLES
+    private final LongAdder turns = new LongAdder();
+    private final LongAdder invalidTurns = new LongAdder();
+    private final LongAdder winChecks = new LongAdder();
+    private final LongAdder winsDetected = new LongAdder();
+    private final LongAdder aiDecisions = new LongAdder();
+    private final LatencyHistogram turnLatency = new LatencyHistogram();
+    private final LatencyHistogram winCheckLatency = new LatencyHistogram();
+    private final LatencyHistogram aiDecisionLatency = new LatencyHistogram();
+
+    /** Private constructor (Singleton) */
+    private EngineMetrics() {}
+
+    /**
+     * @return metrics instance, or null when instrumentation is disabled
+     */
+    public static EngineMetrics getInstance() { return INSTANCE; }
+
+    /**
+     * Records a single turn - only call when {@link #ENABLED}
+     * @param nanos time taken by the turn
+     * @param successful true if the move was legal
+     */
+    public static void recordTurn(long nanos, boolean successful) {
+        INSTANCE.turns.increment();
+        if(!successful) INSTANCE.invalidTurns.increment();
+        INSTANCE.turnLatency.record(nanos);
+    }
+
+    /**
+     * Records a single board win check - only call when {@link #ENABLED}
+     * @param nanos time taken by the check
+     * @param won true if a win was found
+     */
+    public static void recordWinCheck(long nanos, boolean won) {
+        INSTANCE.winChecks.increment();
+        if(won) INSTANCE.winsDetected.increment();
+        INSTANCE.winCheckLatency.record(nanos);
+    }
+
+    /**
+     * Records a single computer player decision - only call when {@link #ENABLED}
+     * @param nanos time taken to choose a move
+     */
+    public static void recordAiDecision(long nanos) {
+        INSTANCE.aiDecisions.increment();
+        INSTANCE.aiDecisionLatency.record(nanos);
+    }
+
+    @Override public long getTurnCount() { return turns.sum(); }
+    @Override public long getInvalidTurnCount() { return invalidTurns.sum(); }
+    @Override public long getTurnLatencyP50() { return turnLatency.getValueAtPercentile(50); }
+    @Override public long getTurnLatencyP99() { return turnLatency.getValueAtPercentile(99); }
+    @Override public long getTurnLatencyP999() { return turnLatency.getValueAtPercentile(99.9); }
+    @Override public long getTurnLatencyMax() { return turnLatency.getMax(); }
+    @Override public long getWinCheckCount() { return winChecks.sum(); }
+    @Override public long getWinsDetected() { return winsDetected.sum(); }
+    @Override public long getWinCheckLatencyP50() { return winCheckLatency.getValueAtPercentile(50); }
+    @Override public long getWinCheckLatencyP99() { return winCheckLatency.getValueAtPercentile(99); }
+    @Override public long getWinCheckLatencyMax() { return winCheckLatency.getMax(); }
+    @Override public long getAiDecisionCount() { return aiDecisions.sum(); }
+    @Override public long getAiDecisionLatencyP50() { return aiDecisionLatency.getValueAtPercentile(50); }
+    @Override public long getAiDecisionLatencyP99() { return aiDecisionLatency.getValueAtPercentile(99); }
+    @Override public long getAiDecisionLatencyMax() { return aiDecisionLatency.getMax(); }
+
+    @Override
+    public void reset() {
+        turns.reset();
+        invalidTurns.reset();
+        winChecks.reset();
+        winsDetected.reset();
+        aiDecisions.reset();
+        turnLatency.reset();
+        winCheckLatency.reset();
+        aiDecisionLatency.reset();
+    }
+
+    /**
+     * Registers metrics with the platform MBean server - metrics are still collected if registration fails
+     * @param metrics metrics to register
+     * @return metrics
+     */
+    private static EngineMetrics register(EngineMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            System.out.println("Unable to register engine metrics: " + e.getMessage());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,57 @@
+package metrics;
+
+/**
+ * JMX management interface for Connect4 engine metrics - latencies are reported in nanoseconds
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public interface EngineMetricsMBean {
+
+    /** @return number of turns attempted */
+    long getTurnCount();
+
+    /** @return number of turns rejected as illegal */
+    long getInvalidTurnCount();
+
+    /** @return median turn latency */
+    long getTurnLatencyP50();
+
+    /** @return 99th percentile turn latency */
+    long getTurnLatencyP99();
+
+    /** @return 99.9th percentile turn latency */
+    long getTurnLatencyP999();
+
+    /** @return largest turn latency */
+    long getTurnLatencyMax();
+
+    /** @return number of board win checks */
+    long getWinCheckCount();
+
+    /** @return number of win checks that found a win */
+    long getWinsDetected();
+
+    /** @return median win check latency */
+    long getWinCheckLatencyP50();
+
+    /** @return 99th percentile win check latency */
+    long getWinCheckLatencyP99();
+
+    /** @return largest win check latency */
+    long getWinCheckLatencyMax();
+
+    /** @return number of computer player decisions */
+    long getAiDecisionCount();
+
+    /** @return median computer player decision latency */
+    long getAiDecisionLatencyP50();
+
+    /** @return 99th percentile computer player decision latency */
+    long getAiDecisionLatencyP99();
+
+    /** @return largest computer player decision latency */
+    long getAiDecisionLatencyMax();
+
+    /** Clears all counters and histograms */
+    void reset();
+}
@@ -0,0 +1,39 @@
+package metrics;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Enabled checks for Connect4 Flight Recorder events. Callers check these before creating an event, so no event
+ * object is allocated unless a recording has the event enabled. Event types are only looked up once Flight
+ * Recorder has been initialized, so JVMs that never record do not pay for loading it.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public final class FlightEvents {
+
+    /** Private constructor (Utility) */
+    private FlightEvents() {}
+
+    /** @return true if a recording has game start events enabled */
+    public static boolean gameStartEnabled() { return FlightRecorder.isInitialized() && Types.GAME_START.isEnabled(); }
+
+    /** @return true if a recording has turn events enabled */
+    public static boolean turnEnabled() { return FlightRecorder.isInitialized() && Types.TURN.isEnabled(); }
+
+    /** @return true if a recording has computer move events enabled */
+    public static boolean computerMoveEnabled() { return FlightRecorder.isInitialized() && Types.COMPUTER_MOVE.isEnabled(); }
+
+    /** @return true if a recording has game over events enabled */
+    public static boolean gameOverEnabled() { return FlightRecorder.isInitialized() && Types.GAME_OVER.isEnabled(); }
+
+    /**
+     * Lazily registered event types
+     */
+    private static final class Types {
+        private static final EventType GAME_START = EventType.getEventType(GameStartEvent.class);
+        private static final EventType TURN = EventType.getEventType(TurnEvent.class);
+        private static final EventType COMPUTER_MOVE = EventType.getEventType(ComputerMoveEvent.class);
+        private static final EventType GAME_OVER = EventType.getEventType(GameOverEvent.class);
+    }
+}
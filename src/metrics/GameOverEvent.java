@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted when a move wins or ties the game
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+@Name("connect4.GameOver")
+@Label("Game Over")
+@Category("Connect4")
+@Description("Win or tie detected after a move")
+public class GameOverEvent extends jdk.jfr.Event {
+
+    @Label("Game Id")
+    public long gameId;
+
+    @Label("Result")
+    @Description("WON or TIED")
+    public String result;
+
+    @Label("Winner")
+    @Description("Name of winning player, null for a tie")
+    public String winner;
+
+    @Label("Moves")
+    public int moves;
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted when players are seated for a new game or a game is restarted
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+@Name("connect4.GameStart")
+@Label("Game Start")
+@Category("Connect4")
+@Description("Players seated for a new game, or an existing game restarted")
+public class GameStartEvent extends jdk.jfr.Event {
+
+    @Label("Game Id")
+    public long gameId;
+
+    @Label("Restart")
+    @Description("True if an existing game was restarted")
+    public boolean restart;
+
+    @Label("Single Player")
+    @Description("True if one of the players is not human")
+    public boolean singlePlayer;
+}
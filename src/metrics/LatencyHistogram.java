@@ -0,0 +1,123 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram - every power of two is split
+ * into 2^{@value #SUB_BUCKET_BITS} linear sub-buckets, giving a fixed relative precision of about 6% across the
+ * full range of a long. Buckets are striped by thread so concurrent recorders rarely touch the same cache line.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    /** Linear sub-buckets per power of two, as bits */
+    private static final int SUB_BUCKET_BITS = 4;
+    /** Number of linear sub-buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Total buckets per stripe */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    // INSTANCE VARIABLES
+    /** Bucket counts, one row of {@link #BUCKETS} per stripe */
+    private final AtomicLongArray counts;
+    /** Largest value recorded, one entry per stripe */
+    private final AtomicLongArray max;
+    /** Mask for stripe index from thread id */
+    private final int stripeMask;
+
+    /**
+     * Constructor, sizes stripes to the number of available processors
+     */
+    public LatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+        // pad max entries onto separate cache lines
+        this.max = new AtomicLongArray(stripes * 8);
+    }
+
+    /**
+     * Records a single value
+     * @param nanos latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.getAndIncrement(stripe * BUCKETS + bucket(value));
+        int maxIndex = stripe * 8;
+        long current = max.get(maxIndex);
+        while(value > current && !max.compareAndSet(maxIndex, current, value)) current = max.get(maxIndex);
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long getCount() {
+        long total = 0;
+        for(int i = 0; i < counts.length(); i++) total += counts.get(i);
+        return total;
+    }
+
+    /**
+     * @return largest value recorded
+     */
+    public long getMax() {
+        long result = 0;
+        for(int i = 0; i < max.length(); i += 8) result = Math.max(result, max.get(i));
+        return result;
+    }
+
+    /**
+     * @param percentile percentile from 0 to 100
+     * @return upper bound of the bucket holding the requested percentile, capped at the largest value recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            merged[i % BUCKETS] += count;
+            total += count;
+        }
+        if(total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if(seen >= target) return Math.min(upperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears all recorded values - values recorded concurrently with a reset may be lost
+     */
+    public void reset() {
+        for(int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        for(int i = 0; i < max.length(); i++) max.set(i, 0);
+    }
+
+    /**
+     * @param value non-negative value
+     * @return bucket index for value
+     */
+    static int bucket(long value) {
+        if(value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((magnitude - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub;
+    }
+
+    /**
+     * @param bucket bucket index
+     * @return largest value that maps to bucket
+     */
+    static long upperBound(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int magnitude = (bucket >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long sub = bucket & (SUB_BUCKETS - 1);
+        long bound = ((SUB_BUCKETS + sub + 1) << (magnitude - SUB_BUCKET_BITS)) - 1;
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+}
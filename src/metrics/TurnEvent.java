@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning a single call to Connect4.facilitateTurn
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+@Name("connect4.Turn")
+@Label("Turn")
+@Category("Connect4")
+@Description("A single attempted move, including the win and tie check that follows it")
+public class TurnEvent extends jdk.jfr.Event {
+
+    @Label("Game Id")
+    public long gameId;
+
+    @Label("Player")
+    public String player;
+
+    @Label("Column")
+    public int column;
+
+    @Label("Successful")
+    @Description("False if the move was rejected as illegal")
+    public boolean successful;
+}
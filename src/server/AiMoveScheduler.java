@@ -0,0 +1,249 @@
+package server;
+
+import ai.NTupleNetwork;
+import core.Connect4;
+import core.Position;
+import metrics.LatencyHistogram;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Schedules computer move searches for many games on a fixed pool of worker threads.
+ * <p>
+ * Each search runs in slices of a bounded number of nodes, and between slices it goes back on a queue ordered by
+ * the game's response deadline, so the earliest deadline is always worked on first and one deep search cannot hold
+ * a worker while other games wait. Searches deepen one ply at a time and always hold the best move of their deepest
+ * finished iteration. Under overload they degrade instead of running late: the depth limit drops as the queue
+ * grows, and a search whose deadline is too close for another slice, once every search queued behind it has been
+ * allowed time to be answered, is answered straight away with what it has.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class AiMoveScheduler implements AutoCloseable {
+
+    /** Queued searches per worker before depth limits start to drop */
+    private static final int OVERLOAD_PER_WORKER = 4;
+
+    // INSTANCE VARIABLES
+    /** Searches waiting for a slice, earliest deadline first */
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final Thread[] workers;
+    /** Nodes per slice */
+    private final int sliceNodes;
+    /** Deepest search when the pool is not overloaded */
+    private final int maxDepth;
+    /** Leaf evaluator shared by every search, null to count threats */
+    private final NTupleNetwork evaluator;
+    /** Orders tasks with equal deadlines by submission */
+    private final AtomicLong sequence = new AtomicLong();
+    /** Time from submission to answer */
+    private final LatencyHistogram responseTimes = new LatencyHistogram();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder deadlineMisses = new LongAdder();
+    private final LongAdder degraded = new LongAdder();
+    private final LongAdder slices = new LongAdder();
+    /**
+     * Moving average of slice duration in nanoseconds - updated without synchronisation, a lost update only
+     * delays the estimate by one slice
+     */
+    private volatile long sliceNanos = TimeUnit.MILLISECONDS.toNanos(1);
+    /** Moving average of time to stop a search and answer it, in nanoseconds - updated like sliceNanos */
+    private volatile long answerNanos = TimeUnit.MICROSECONDS.toNanos(10);
+    private volatile boolean open = true;
+
+    /**
+     * Constructor, starts worker threads
+     * @param workers number of worker threads
+     * @param sliceNodes nodes searched per slice
+     * @param maxDepth deepest search when the pool is not overloaded
+     * @param evaluator leaf evaluator, null to score leaves by counting threats
+     */
+    public AiMoveScheduler(int workers, int sliceNodes, int maxDepth, NTupleNetwork evaluator) {
+        if(workers < 1 || sliceNodes < 1 || maxDepth < 1) throw new IllegalArgumentException("Scheduler sizes must be positive");
+        this.sliceNodes = sliceNodes;
+        this.maxDepth = maxDepth;
+        this.evaluator = evaluator;
+        this.workers = new Thread[workers];
+        for(int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::work, "ai-move-" + i);
+            worker.setDaemon(true);
+            this.workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues move search for the current board
+     * @param board board to move on - copied, so the game may continue to be read while the search runs
+     * @param budgetMillis time allowed before a move is needed
+     * @return future completed with the chosen column, 1 based
+     */
+    public CompletableFuture<Integer> submit(Connect4.Board board, long budgetMillis) {
+        return submit(Position.of(board), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+    }
+
+    /**
+     * Queues move search for a position
+     * @param position position to move from - copied
+     * @param deadlineNanos {@link System#nanoTime()} by which a move is needed
+     * @return future completed with the chosen column, 1 based
+     */
+    public CompletableFuture<Integer> submit(Position position, long deadlineNanos) {
+        if(!open) throw new IllegalStateException("Scheduler is closed");
+        submitted.increment();
+        SlicedSearch search = new SlicedSearch(position, evaluator, maxDepth);
+        search.limitDepth(depthLimit());
+        Task task = new Task(search, deadlineNanos, sequence.incrementAndGet());
+        // wins, forced replies and lost positions are decided without searching
+        if(task.search.isFinished()) complete(task, System.nanoTime());
+        else requeue(task);
+        return task.result;
+    }
+
+    /** @return searches waiting for a slice */
+    public int getQueueDepth() { return queue.size(); }
+
+    /** @return searches answered after their deadline */
+    public long getDeadlineMisses() { return deadlineMisses.sum(); }
+
+    /** @return searches answered before reaching the depth they would get without overload */
+    public long getDegradedCount() { return degraded.sum(); }
+
+    /** @return searches submitted */
+    public long getSubmittedCount() { return submitted.sum(); }
+
+    /** @return searches answered */
+    public long getCompletedCount() { return completed.sum(); }
+
+    /** @return slices run */
+    public long getSliceCount() { return slices.sum(); }
+
+    /** @return time from submission to answer, in nanoseconds */
+    public LatencyHistogram getResponseTimes() { return responseTimes; }
+
+    /**
+     * Stops workers and waits for them to finish their current slice - searches still queued or running are answered
+     * with their best move so far, so every future has completed once this returns
+     */
+    @Override
+    public void close() {
+        open = false;
+        for(Thread worker : workers) worker.interrupt();
+        drain();
+        boolean interrupted = false;
+        for(Thread worker : workers) {
+            if(worker == Thread.currentThread()) continue;
+            while(worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        drain();
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    // HELPER METHODS
+
+    /**
+     * Worker loop - takes the earliest deadline, runs one slice and requeues it unless it is done
+     */
+    private void work() {
+        while(open) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            SlicedSearch search = task.search;
+            search.limitDepth(depthLimit());
+            long now = System.nanoTime();
+            // leave room for a slow slice, and for answering every search queued behind this one
+            long reserve = 2 * sliceNanos + (queue.size() / workers.length + 1) * answerNanos;
+            if(task.deadline - now <= reserve) {
+                search.stop();
+                complete(task, now);
+                long estimate = answerNanos;
+                answerNanos = estimate + (System.nanoTime() - now - estimate) / 8;
+                continue;
+            }
+            search.run(sliceNodes);
+            long end = System.nanoTime();
+            long estimate = sliceNanos;
+            sliceNanos = estimate + (end - now - estimate) / 8;
+            slices.increment();
+            if(search.isFinished()) complete(task, end);
+            else requeue(task);
+        }
+    }
+
+    /**
+     * Puts an unfinished search back on the queue, or answers it if the scheduler closed meanwhile - close clears
+     * open before draining, so either the drain sees the task or this sees the scheduler closed
+     */
+    private void requeue(Task task) {
+        queue.offer(task);
+        if(!open && queue.remove(task)) {
+            task.search.stop();
+            complete(task, System.nanoTime());
+        }
+    }
+
+    /** Answers every queued search with its best move so far */
+    private void drain() {
+        Task task;
+        while((task = queue.poll()) != null) {
+            task.search.stop();
+            complete(task, System.nanoTime());
+        }
+    }
+
+    /**
+     * @return depth limit for searches given the current queue depth - one ply less for each doubling of the
+     * queue past its overload point
+     */
+    private int depthLimit() {
+        int backlog = queue.size() / (workers.length * OVERLOAD_PER_WORKER);
+        int cut = backlog == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(backlog);
+        return Math.max(1, maxDepth - cut);
+    }
+
+    private void complete(Task task, long now) {
+        if(now - task.deadline > 0) deadlineMisses.increment();
+        if(task.search.wasCutShort()) degraded.increment();
+        completed.increment();
+        responseTimes.record(now - task.submitted);
+        task.result.complete(task.search.getBestColumn());
+    }
+
+    /**
+     * Search waiting for or running a slice
+     */
+    private static final class Task implements Comparable<Task> {
+        private final SlicedSearch search;
+        private final long deadline;
+        private final long sequence;
+        private final long submitted = System.nanoTime();
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        private Task(SlicedSearch search, long deadline, long sequence) {
+            this.search = search;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int order = Long.compare(deadline - other.deadline, 0);
+            return order != 0 ? order : Long.compare(sequence, other.sequence);
+        }
+    }
+}
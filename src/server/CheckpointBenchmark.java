@@ -0,0 +1,94 @@
+package server;
+
+import core.Bitboard;
+import core.Connect4;
+import core.Connect4ComputerPlayer;
+import core.Player;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures game checkpoints and restores. Write mode starts many games at random positions, then checkpoints them
+ * repeatedly while another thread keeps playing. Restore mode is meant to run in a fresh JVM, so the restore time it
+ * reports is what a restarting host would see.
+ * <p>
+ * Usage: CheckpointBenchmark write file [games] [checkpoints] | restore file [expectedGames]
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class CheckpointBenchmark {
+
+    /**
+     * Runs benchmark
+     * @param args mode, checkpoint file, then game count and checkpoints for write mode, or expected games for restore
+     * @throws IOException if checkpoint cannot be written or read
+     * @throws InterruptedException if interrupted while stopping the playing thread
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2) {
+            System.out.println("Usage: CheckpointBenchmark write file [games] [checkpoints] | restore file [expectedGames]");
+            return;
+        }
+        Path file = Paths.get(args[1]);
+        if(args[0].equals("restore")) {
+            int expected = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+            long start = System.nanoTime();
+            List<Connect4> games = new GameCheckpointer(file, expected).restore(Connect4.uiType.HEADLESS);
+            System.out.printf("restored %d games in %.1f ms, %d ms after JVM start%n", games.size(),
+                    (System.nanoTime() - start) / 1e6, ManagementFactory.getRuntimeMXBean().getUptime());
+            return;
+        }
+
+        int count       = args.length > 2 ? Integer.parseInt(args[2]) : 300_000;
+        int checkpoints = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        GameCheckpointer checkpointer = new GameCheckpointer(file, count);
+        Connect4[] games = new Connect4[count];
+        Player red = new Player("Red", "X", "Red");
+        Player yellow = new Player("Yellow", "O", "Yellow");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i = 0; i < count; i++) {
+            Connect4 game = new Connect4(Connect4.uiType.HEADLESS);
+            game.setPlayers(red, i % 3 == 0 ? new Connect4ComputerPlayer("O", "Yellow") : yellow);
+            playRandom(game, random.nextInt(30));
+            checkpointer.register(game);
+            games[i] = game;
+        }
+
+        // one thread keeps playing while checkpoints run - each game is only ever touched by this thread
+        Thread player = new Thread(() -> {
+            ThreadLocalRandom r = ThreadLocalRandom.current();
+            while(!Thread.currentThread().isInterrupted()) {
+                Connect4 game = games[r.nextInt(count)];
+                if(game.getStatus() == Connect4.GameStatus.IN_PROGRESS) playRandom(game, 1);
+                else game.restartGame();
+            }
+        }, "checkpoint-benchmark-player");
+        player.start();
+        for(int i = 0; i < checkpoints; i++) {
+            long start = System.nanoTime();
+            int written = checkpointer.checkpoint();
+            System.out.printf("checkpoint %d games in %.1f ms, %d bytes%n", written,
+                    (System.nanoTime() - start) / 1e6, Files.size(file));
+        }
+        player.interrupt();
+        player.join();
+    }
+
+    /**
+     * Plays random legal moves for whichever player is to move
+     * @param game game in progress
+     * @param moves most moves to play
+     */
+    private static void playRandom(Connect4 game, int moves) {
+        for(int i = 0; i < moves && game.getStatus() == Connect4.GameStatus.IN_PROGRESS; i++) {
+            int column = Bitboard.randomLegalColumn(game.getBoard().getLegalMoves(), ThreadLocalRandom.current());
+            game.facilitateTurn(column + 1);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package server;
+
+import core.Bitboard;
+import core.Connect4;
+import core.Connect4ComputerPlayer;
+import core.Player;
+import core.Position;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Saves every registered game in progress to a compact binary file, and rebuilds them after a restart.
+ * <p>
+ * Each game publishes its position as a single volatile long after every move (see
+ * {@link Connect4#getPositionKey()}), so a checkpoint reads a consistent cut of each game without locking it or
+ * pausing play - games keep moving while the file is written, and each is saved as it stood at some moment during
+ * the checkpoint. Players are written once to a table and referenced by index, so a game costs 26 bytes. The file is
+ * written beside the target and moved into place, so a crash mid-checkpoint leaves the previous one intact.
+ * <p>
+ * Restoring sets each board straight from its packed tokens rather than replaying moves. Computer players are
+ * restored at their saved difficulty. Other non-human players cannot have their move strategy saved and come back
+ * as human players, for the host to replace.
+ * <p>
+ * File layout, big endian: magic and version ints, time written as a long, then player and game counts as ints.
+ * Each player follows as a kind byte and UTF name, token and color, then each game as id long, rows and columns
+ * bytes, position key long and first and second player index ints.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class GameCheckpointer implements AutoCloseable {
+
+    /** File identifier - "C4CK" */
+    private static final int MAGIC = 0x4334434B;
+    /** File format version */
+    private static final int VERSION = 1;
+    /** Bytes before player table */
+    private static final int HEADER_BYTES = 24;
+    /** Bytes per saved game */
+    private static final int GAME_BYTES = 26;
+    /** Games restored per parallel task */
+    private static final int RESTORE_CHUNK = 4096;
+    /** Player kinds */
+    private static final byte HUMAN = 0, COMPUTER_EASY = 1, COMPUTER_HARD = 2, OTHER = 3;
+
+    // INSTANCE VARIABLES
+    /** Games to save, by id */
+    private final ConcurrentHashMap<Long, Connect4> games;
+    /** Checkpoint file */
+    private final Path file;
+    /** Thread for periodic checkpoints, null until started */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor
+     * @param file checkpoint file to write and restore from
+     */
+    public GameCheckpointer(Path file) {
+        this(file, 16);
+    }
+
+    /**
+     * Constructor
+     * @param file checkpoint file to write and restore from
+     * @param expectedGames number of games expected to be registered at once - sizing the registry up front saves
+     * rehashing it while a large checkpoint is restored
+     */
+    public GameCheckpointer(Path file, int expectedGames) {
+        this.file = file;
+        this.games = new ConcurrentHashMap<>(expectedGames);
+    }
+
+    /**
+     * Adds game to future checkpoints - games stay registered until removed, but are only saved while in progress
+     * @param game game to save
+     */
+    public void register(Connect4 game) { games.put(game.getGameId(), game); }
+
+    /**
+     * Removes game from future checkpoints
+     * @param game game to stop saving
+     */
+    public void unregister(Connect4 game) { games.remove(game.getGameId(), game); }
+
+    /** @return number of registered games */
+    public int getGameCount() { return games.size(); }
+
+    /**
+     * Starts writing a checkpoint at a fixed period on a background thread
+     * @param periodMillis time between the end of one checkpoint and the start of the next
+     */
+    public synchronized void start(long periodMillis) {
+        if(scheduler != null) throw new IllegalStateException("Checkpoints already started");
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "game-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                System.out.println("Unable to write checkpoint: " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops periodic checkpoints - call {@link #checkpoint()} afterwards to save the final state
+     */
+    @Override
+    public synchronized void close() {
+        if(scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    /**
+     * Writes every registered game in progress to the checkpoint file
+     * @return number of games written
+     * @throws IOException if file cannot be written
+     */
+    public int checkpoint() throws IOException {
+        PlayerTable players = new PlayerTable();
+        ByteBuffer gameBytes = ByteBuffer.allocate((games.size() + 64) * GAME_BYTES);
+        int count = 0;
+        Position position = null;
+        for(Connect4 game : games.values()) {
+            Player first = game.getPlayer(0);
+            Player second = game.getPlayer(1);
+            if(first == null || second == null) continue;
+            int rows = game.getBoardRows();
+            int columns = game.getBoardColumns();
+            long key = game.getPositionKey();
+            if(position == null || position.getRows() != rows || position.getColumns() != columns)
+                position = new Position(rows, columns);
+            position.setKey(key);
+            // only the player who moved last can have four in a row
+            if(position.isFull() || Bitboard.hasFour(position.getCurrent() ^ position.getMask(), rows)) continue;
+            // games registered while the checkpoint runs may not fit
+            if(gameBytes.remaining() < GAME_BYTES) {
+                ByteBuffer larger = ByteBuffer.allocate(gameBytes.capacity() * 2);
+                gameBytes.flip();
+                gameBytes = larger.put(gameBytes);
+            }
+            gameBytes.putLong(game.getGameId());
+            gameBytes.put((byte) rows);
+            gameBytes.put((byte) columns);
+            gameBytes.putLong(key);
+            gameBytes.putInt(players.indexOf(first));
+            gameBytes.putInt(players.indexOf(second));
+            count++;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try(OutputStream stream = Files.newOutputStream(temp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(players.size());
+            out.writeInt(count);
+            players.bytes.writeTo(out);
+            out.write(gameBytes.array(), 0, gameBytes.position());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Rebuilds games from the checkpoint file under their saved ids and registers them - games are built in
+     * parallel on the common fork-join pool
+     * @param uiSelection UI mode for restored games
+     * @return restored games, in the order they were saved
+     * @throws IOException if file cannot be read or is not a checkpoint
+     */
+    public List<Connect4> restore(Connect4.uiType uiSelection) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(stream);
+        if(bytes.length < HEADER_BYTES || in.readInt() != MAGIC) throw new IOException("Not a checkpoint file");
+        int version = in.readInt();
+        if(version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+        in.readLong();
+        int playerCount = in.readInt();
+        int gameCount = in.readInt();
+        byte[] kinds = new byte[playerCount];
+        String[][] descriptions = new String[playerCount][];
+        Player[] shared = new Player[playerCount];
+        for(int i = 0; i < playerCount; i++) {
+            kinds[i] = in.readByte();
+            descriptions[i] = new String[] {in.readUTF(), in.readUTF(), in.readUTF()};
+            if(kinds[i] == HUMAN || kinds[i] == OTHER) shared[i] = restorePlayer(kinds[i], descriptions[i]);
+        }
+        int start = bytes.length - stream.available();
+        if(bytes.length - start != (long) gameCount * GAME_BYTES) throw new IOException("Truncated checkpoint file");
+
+        ByteBuffer games = ByteBuffer.wrap(bytes);
+        Connect4[] restored = new Connect4[gameCount];
+        IntStream.range(0, (gameCount + RESTORE_CHUNK - 1) / RESTORE_CHUNK).parallel().forEach(chunk -> {
+            Position position = null;
+            int end = Math.min(gameCount, (chunk + 1) * RESTORE_CHUNK);
+            for(int g = chunk * RESTORE_CHUNK; g < end; g++) {
+                int offset = start + g * GAME_BYTES;
+                long id = games.getLong(offset);
+                int rows = games.get(offset + 8) & 0xFF;
+                int columns = games.get(offset + 9) & 0xFF;
+                long key = games.getLong(offset + 10);
+                int first = games.getInt(offset + 18);
+                int second = games.getInt(offset + 22);
+                if(position == null || position.getRows() != rows || position.getColumns() != columns)
+                    position = new Position(rows, columns);
+                position.setKey(key);
+
+                Connect4 game = new Connect4(uiSelection, rows, columns, id);
+                // players without state are shared between games, but never between the two seats of one game
+                Player firstPlayer = shared[first] != null ? shared[first] : restorePlayer(kinds[first], descriptions[first]);
+                Player secondPlayer = shared[second] != null && second != first
+                        ? shared[second] : restorePlayer(kinds[second], descriptions[second]);
+                game.setPlayers(firstPlayer, secondPlayer);
+                game.restorePosition(position.getFirst(), position.getSecond());
+                this.games.put(id, game);
+                restored[g] = game;
+            }
+        });
+        return Arrays.asList(restored);
+    }
+
+    // HELPER METHODS
+
+    /**
+     * @param description name, token and color
+     * @return new player of the saved kind
+     */
+    private static Player restorePlayer(byte kind, String[] description) {
+        switch (kind) {
+            case COMPUTER_EASY:
+                return new Connect4ComputerPlayer(description[1], description[2], Connect4ComputerPlayer.ComputerDifficulty.easy);
+            case COMPUTER_HARD:
+                return new Connect4ComputerPlayer(description[1], description[2], Connect4ComputerPlayer.ComputerDifficulty.hard);
+            default:
+                return new Player(description[0], description[1], description[2]);
+        }
+    }
+
+    /**
+     * Players written so far in a checkpoint - players seen before are found by identity, and new player objects
+     * by what is written, so every game against the computer shares one entry
+     */
+    private static final class PlayerTable {
+        private final Map<Player, Integer> byIdentity = new IdentityHashMap<>();
+        private final Map<List<String>, Integer> byDescription = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private int size() { return byDescription.size(); }
+
+        /**
+         * @return index of player in table, adding it if it is new
+         * @throws IOException never - players are written to memory
+         */
+        private int indexOf(Player player) throws IOException {
+            Integer index = byIdentity.get(player);
+            if(index != null) return index;
+            byte kind = HUMAN;
+            if(player instanceof Connect4ComputerPlayer) {
+                kind = ((Connect4ComputerPlayer) player).getDifficulty() == Connect4ComputerPlayer.ComputerDifficulty.hard
+                        ? COMPUTER_HARD : COMPUTER_EASY;
+            } else if(!player.isHuman()) {
+                kind = OTHER;
+            }
+            String name = orEmpty(player.getPlayerName());
+            String token = orEmpty(player.getPlayerToken());
+            String color = orEmpty(player.getPlayerColor());
+            List<String> description = Arrays.asList(Byte.toString(kind), name, token, color);
+            index = byDescription.get(description);
+            if(index == null) {
+                index = byDescription.size();
+                byDescription.put(description, index);
+                out.writeByte(kind);
+                out.writeUTF(name);
+                out.writeUTF(token);
+                out.writeUTF(color);
+            }
+            byIdentity.put(player, index);
+            return index;
+        }
+
+        private static String orEmpty(String value) { return value == null ? "" : value; }
+    }
+}
@@ -0,0 +1,25 @@
+package server;
+
+import core.Connect4;
+
+/**
+ * Callback for the outcome of joining the matchmaking queue. Called from whichever thread makes the match, so
+ * implementations should hand off quickly.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public interface MatchListener {
+
+    /**
+     * Called once when the player has been seated in a game
+     * @param game Game the player was seated in
+     * @param seat 0 if the player moves first, 1 if second
+     */
+    void matched(Connect4 game, int seat);
+
+    /**
+     * Called instead of {@link #matched(Connect4, int)} if the player could not be seated
+     * @param reason Why the player was turned away
+     */
+    default void rejected(Matchmaker.Rejection reason) {}
+}
@@ -0,0 +1,329 @@
+package server;
+
+import core.Connect4;
+import core.Connect4ComputerPlayer;
+import core.GameListener;
+import core.Player;
+import metrics.LatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pairs waiting players into games, or seats them against a computer opponent from a bounded pool.
+ * <p>
+ * Waiting players sit in a lock-free queue and are paired by whichever thread joins next, so matching adds no
+ * threads per player. Admission is bounded: once the queue holds its limit of waiting players further joins are
+ * rejected immediately, and computer opponents are limited to a fixed number of concurrent games, so a burst of joins
+ * is shed rather than piling up memory. A single maintenance thread gives players who have waited too long a computer
+ * opponent when one is free, and turns away players who have waited past the maximum.
+ * <p>
+ * A computer opponent goes back to the pool when its game is won or tied; a game abandoned before then must be handed
+ * back with {@link #release(Connect4)}.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class Matchmaker implements AutoCloseable {
+
+    /**
+     * Enumerable for reasons a player is turned away
+     */
+    public enum Rejection {
+        /** Waiting queue is at its limit */
+        QUEUE_FULL,
+        /** Every computer opponent is already in a game */
+        NO_COMPUTER_AVAILABLE,
+        /** Player waited past the maximum wait without an opponent */
+        TIMED_OUT,
+        /** Matchmaker has been closed */
+        CLOSED
+    }
+
+    // INSTANCE VARIABLES
+    /** Players waiting for a human opponent, oldest first - claimed tickets are dropped when next polled */
+    private final ConcurrentLinkedDeque<Ticket> waiting = new ConcurrentLinkedDeque<>();
+    /** Players in queue that have not yet been matched or turned away */
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    /** Computer games in progress */
+    private final AtomicInteger computerGames = new AtomicInteger();
+    /** Reserved computer opponents by game */
+    private final Map<Connect4, ComputerSlot> computerSlots = new ConcurrentHashMap<>();
+    /** Maximum players waiting at once */
+    private final int maxWaiting;
+    /** Maximum concurrent games against a computer opponent */
+    private final int maxComputerGames;
+    /** Wait after which a player is offered a computer opponent */
+    private final long computerAfterNanos;
+    /** Wait after which a player is turned away */
+    private final long maxWaitNanos;
+    /** Maintenance thread for wait timeouts */
+    private final ScheduledExecutorService maintenance;
+    /** Time from joining to being seated */
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder humanGames = new LongAdder();
+    private final LongAdder computerGamesStarted = new LongAdder();
+    /** Cleared when matchmaker is closed */
+    private volatile boolean open = true;
+
+    /**
+     * Constructor, starts maintenance thread
+     * @param maxWaiting maximum players waiting at once
+     * @param maxComputerGames maximum concurrent games against a computer opponent
+     * @param computerAfterMillis wait after which a player is offered a computer opponent
+     * @param maxWaitMillis wait after which a player is turned away
+     */
+    public Matchmaker(int maxWaiting, int maxComputerGames, long computerAfterMillis, long maxWaitMillis) {
+        this.maxWaiting = maxWaiting;
+        this.maxComputerGames = maxComputerGames;
+        this.computerAfterNanos = TimeUnit.MILLISECONDS.toNanos(computerAfterMillis);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "matchmaker-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Math.min(computerAfterMillis, maxWaitMillis) / 4);
+        maintenance.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Joins queue for a human opponent - the listener is called when the player is seated or turned away, possibly
+     * before this method returns
+     * @param name Player name
+     * @param listener Outcome callback
+     * @return false if the player was turned away immediately
+     */
+    public boolean join(String name, MatchListener listener) {
+        joined.increment();
+        if(!open) return reject(listener, Rejection.CLOSED);
+        // bounded admission - reserve a place before touching the queue
+        int count;
+        do {
+            count = waitingCount.get();
+            if(count >= maxWaiting) return reject(listener, Rejection.QUEUE_FULL);
+        } while(!waitingCount.compareAndSet(count, count + 1));
+
+        Ticket ticket = new Ticket(name, listener);
+        Ticket opponent = pollWaiting();
+        if(opponent != null) {
+            ticket.claim();
+            startHumanGame(opponent, ticket);
+        } else {
+            waiting.offer(ticket);
+        }
+        return true;
+    }
+
+    /**
+     * Seats player against a computer opponent straight away, if one is free
+     * @param name Player name
+     * @param listener Outcome callback
+     * @return false if the player was turned away
+     */
+    public boolean joinComputerGame(String name, MatchListener listener) {
+        joined.increment();
+        if(!open) return reject(listener, Rejection.CLOSED);
+        if(!reserveComputer()) return reject(listener, Rejection.NO_COMPUTER_AVAILABLE);
+        startComputerGame(new Ticket(name, listener));
+        return true;
+    }
+
+    /**
+     * Returns the computer opponent of a game that ended without a win or tie, such as one the player left
+     * @param game Game started against a computer opponent
+     * @return false if game holds no computer opponent, or has already given it back
+     */
+    public boolean release(Connect4 game) {
+        ComputerSlot slot = computerSlots.get(game);
+        return slot != null && slot.free(game);
+    }
+
+    /** @return players currently waiting */
+    public int getWaitingCount() { return waitingCount.get(); }
+
+    /** @return computer games in progress */
+    public int getComputerGameCount() { return computerGames.get(); }
+
+    /** @return players who have called join */
+    public long getJoinedCount() { return joined.sum(); }
+
+    /** @return players turned away */
+    public long getRejectedCount() { return rejected.sum(); }
+
+    /** @return games started between two waiting players */
+    public long getHumanGameCount() { return humanGames.sum(); }
+
+    /** @return games started against a computer opponent */
+    public long getComputerGamesStarted() { return computerGamesStarted.sum(); }
+
+    /** @return time from joining to being seated, in nanoseconds */
+    public LatencyHistogram getWaitTimes() { return waitTimes; }
+
+    /**
+     * Stops maintenance and turns away every waiting player
+     */
+    @Override
+    public void close() {
+        open = false;
+        maintenance.shutdownNow();
+        Ticket ticket;
+        while((ticket = waiting.poll()) != null) {
+            if(ticket.claim()) {
+                waitingCount.decrementAndGet();
+                reject(ticket.listener, Rejection.CLOSED);
+            }
+        }
+    }
+
+    // HELPER METHODS
+
+    /**
+     * @return oldest waiting ticket claimed for this thread, or null if the queue is empty
+     */
+    private Ticket pollWaiting() {
+        Ticket ticket;
+        while((ticket = waiting.poll()) != null) {
+            if(ticket.claim()) return ticket;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a claimed ticket to the front of the queue, keeping its place ahead of later joins
+     * @param ticket oldest ticket, which could not be paired
+     */
+    private void requeue(Ticket ticket) {
+        ticket.release();
+        waiting.offerFirst(ticket);
+    }
+
+    /**
+     * Applies wait timeouts, then pairs any players left waiting side by side by racing joins -
+     * runs on the maintenance thread
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        for(Ticket ticket : waiting) {
+            long waited = now - ticket.joinedAt;
+            if(waited >= maxWaitNanos) {
+                if(ticket.claim()) {
+                    waitingCount.decrementAndGet();
+                    reject(ticket.listener, Rejection.TIMED_OUT);
+                }
+            } else if(waited >= computerAfterNanos && reserveComputer()) {
+                if(ticket.claim()) {
+                    waitingCount.decrementAndGet();
+                    startComputerGame(ticket);
+                } else {
+                    computerGames.decrementAndGet();
+                }
+            }
+        }
+        Ticket first;
+        while((first = pollWaiting()) != null) {
+            Ticket second = pollWaiting();
+            if(second == null) {
+                requeue(first);
+                break;
+            }
+            startHumanGame(first, second);
+        }
+    }
+
+    /**
+     * Seats two claimed tickets against each other
+     */
+    private void startHumanGame(Ticket first, Ticket second) {
+        waitingCount.addAndGet(-2);
+        humanGames.increment();
+        Connect4 game = new Connect4(Connect4.uiType.HEADLESS);
+        game.setPlayers(new Player(first.name, "X", "Red"), new Player(second.name, "O", "Yellow"));
+        seat(first, game, 0);
+        seat(second, game, 1);
+    }
+
+    /**
+     * Seats ticket against a computer opponent - a computer slot must already be reserved
+     */
+    private void startComputerGame(Ticket ticket) {
+        computerGamesStarted.increment();
+        Connect4 game = new Connect4(Connect4.uiType.HEADLESS);
+        game.setPlayers(new Player(ticket.name, "X", "Red"), new Connect4ComputerPlayer("O", "Yellow"));
+        ComputerSlot slot = new ComputerSlot();
+        computerSlots.put(game, slot);
+        game.addGameListener(slot);
+        seat(ticket, game, 0);
+    }
+
+    /**
+     * @return true if a computer opponent was reserved
+     */
+    private boolean reserveComputer() {
+        int count;
+        do {
+            count = computerGames.get();
+            if(count >= maxComputerGames) return false;
+        } while(!computerGames.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    private void seat(Ticket ticket, Connect4 game, int seat) {
+        waitTimes.record(System.nanoTime() - ticket.joinedAt);
+        ticket.listener.matched(game, seat);
+    }
+
+    private boolean reject(MatchListener listener, Rejection reason) {
+        rejected.increment();
+        listener.rejected(reason);
+        return false;
+    }
+
+    /**
+     * Waiting player - claimed by exactly one thread before being seated or turned away
+     */
+    private static final class Ticket {
+        private final String name;
+        private final MatchListener listener;
+        private final long joinedAt = System.nanoTime();
+        /** 0 waiting, 1 claimed */
+        private final AtomicInteger state = new AtomicInteger();
+
+        private Ticket(String name, MatchListener listener) {
+            this.name = name;
+            this.listener = listener;
+        }
+
+        private boolean claim() { return state.compareAndSet(0, 1); }
+
+        private void release() { state.set(0); }
+    }
+
+    /**
+     * Returns computer opponent to the pool once its game ends
+     */
+    private final class ComputerSlot implements GameListener {
+        @Override
+        public void gameWon(Connect4 game, Player winner) { free(game); }
+
+        @Override
+        public void gameTied(Connect4 game) { free(game); }
+
+        /**
+         * @return true if this call gave the opponent back - only the first of a game end and a release does
+         */
+        private boolean free(Connect4 game) {
+            if(!computerSlots.remove(game, this)) return false;
+            game.removeGameListener(this);
+            computerGames.decrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package server;
+
+import core.Bitboard;
+import core.Connect4;
+import metrics.LatencyHistogram;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Local soak test for the matchmaker - joins players at increasing rates and reports how long players waited to be
+ * seated, and how many were shed, at each rate. Computer games are played out with random human moves on a small
+ * client pool so computer opponents return to the pool at a realistic pace.
+ * <p>
+ * Usage: MatchmakingSoak [secondsPerRate] [maxWaiting] [maxComputerGames] [computerPercent] [rate...]
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class MatchmakingSoak {
+
+    /** Join rates per second used when none are given */
+    private static final int[] DEFAULT_RATES = {1_000, 10_000, 50_000, 200_000, 1_000_000};
+
+    /**
+     * Runs soak test
+     * @param args seconds per rate, max waiting, max computer games, percent of joins asking for a computer, rates
+     * @throws InterruptedException if interrupted while waiting for a rate to drain
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int seconds          = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int maxWaiting       = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int maxComputerGames = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int computerPercent  = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int[] rates = DEFAULT_RATES;
+        if(args.length > 4) {
+            rates = new int[args.length - 4];
+            for(int i = 0; i < rates.length; i++) rates[i] = Integer.parseInt(args[i + 4]);
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        MatchListener listener = new MatchListener() {
+            @Override
+            public void matched(Connect4 game, int seat) {
+                if(game.getPlayer(1).isHuman()) return;
+                clients.execute(() -> playOut(game));
+            }
+        };
+
+        System.out.printf("%10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "rate/s", "joined", "shed", "human", "computer", "p50 us", "p99 us", "p99.9 us");
+        try(Matchmaker matchmaker = new Matchmaker(maxWaiting, maxComputerGames, 200, 2_000)) {
+            LatencyHistogram waits = matchmaker.getWaitTimes();
+            for(int rate : rates) {
+                long joined = matchmaker.getJoinedCount();
+                long shed = matchmaker.getRejectedCount();
+                long human = matchmaker.getHumanGameCount();
+                long computer = matchmaker.getComputerGamesStarted();
+                waits.reset();
+
+                long intervalNs = TimeUnit.SECONDS.toNanos(1) / rate;
+                long start = System.nanoTime();
+                long end = start + TimeUnit.SECONDS.toNanos(seconds);
+                long issued = 0;
+                for(long now = start; now < end; now = System.nanoTime()) {
+                    // catch up on every join due by now, then park until the next one
+                    long due = (now - start) / intervalNs + 1;
+                    for(; issued < due; issued++) {
+                        if(ThreadLocalRandom.current().nextInt(100) < computerPercent)
+                            matchmaker.joinComputerGame("P" + issued, listener);
+                        else
+                            matchmaker.join("P" + issued, listener);
+                    }
+                    LockSupport.parkNanos(Math.max(0, start + due * intervalNs - System.nanoTime()));
+                }
+                // let the last players be seated or time out
+                while(matchmaker.getWaitingCount() > 0) Thread.sleep(10);
+
+                System.out.printf("%10d %10d %10d %10d %10d %10.1f %10.1f %10.1f%n", rate,
+                        matchmaker.getJoinedCount() - joined,
+                        matchmaker.getRejectedCount() - shed,
+                        matchmaker.getHumanGameCount() - human,
+                        matchmaker.getComputerGamesStarted() - computer,
+                        waits.getValueAtPercentile(50) / 1e3,
+                        waits.getValueAtPercentile(99) / 1e3,
+                        waits.getValueAtPercentile(99.9) / 1e3);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays computer game to the end with random moves for the human seat
+     * @param game game with a human first player and a computer second player
+     */
+    private static void playOut(Connect4 game) {
+        Connect4.Board board = game.getBoard();
+        while(game.getStatus() == Connect4.GameStatus.IN_PROGRESS) {
+            if(game.getCurrentPlayer().isHuman()) {
+                game.facilitateTurn(Bitboard.randomLegalColumn(board.getLegalMoves(), ThreadLocalRandom.current()) + 1);
+            } else {
+                game.facilitateComputerTurn();
+            }
+        }
+    }
+}
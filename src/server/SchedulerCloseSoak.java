@@ -0,0 +1,78 @@
+package server;
+
+import core.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak check for {@link AiMoveScheduler#close()} - repeatedly closes a scheduler while its workers are partway
+ * through slices and checks that every submitted search has been answered with a legal column once close returns.
+ * Exits with status 1 if any future is left incomplete or answered with an illegal move.
+ * <p>
+ * Usage: SchedulerCloseSoak [rounds] [workers] [searches] [closeAfterMicros]
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class SchedulerCloseSoak {
+
+    /**
+     * Runs soak
+     * @param args rounds, workers, searches per round, delay before close in microseconds
+     * @throws InterruptedException if interrupted between submitting and closing
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int rounds     = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int workers    = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int searches   = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        long closeAfter = args.length > 3 ? Long.parseLong(args[3]) : 500;
+
+        int incomplete = 0, illegal = 0;
+        long answered = 0;
+        for(int round = 0; round < rounds; round++) {
+            AiMoveScheduler scheduler = new AiMoveScheduler(workers, 2_000, 12, null);
+            List<Position> positions = new ArrayList<>(searches);
+            List<CompletableFuture<Integer>> results = new ArrayList<>(searches);
+            // deadlines far enough away that only close can answer the searches early
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            for(int i = 0; i < searches; i++) {
+                Position position = randomPosition(ThreadLocalRandom.current().nextInt(8));
+                positions.add(position);
+                results.add(scheduler.submit(position, deadline));
+            }
+            // vary the close point so it lands anywhere within a slice
+            TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextLong(closeAfter + 1));
+            scheduler.close();
+            for(int i = 0; i < searches; i++) {
+                CompletableFuture<Integer> result = results.get(i);
+                if(!result.isDone()) {
+                    incomplete++;
+                    continue;
+                }
+                answered++;
+                int column = result.join() - 1;
+                if(column < 0 || column >= positions.get(i).getColumns() || !positions.get(i).canPlay(column)) illegal++;
+            }
+        }
+        System.out.println("Rounds: " + rounds + ", answered: " + answered + ", incomplete: " + incomplete +
+                ", illegal: " + illegal);
+        if(incomplete > 0 || illegal > 0) System.exit(1);
+    }
+
+    /**
+     * @param moves number of random moves to play
+     * @return position after moves, stopping early rather than playing a winning move
+     */
+    private static Position randomPosition(int moves) {
+        Position position = new Position(6, 7);
+        for(int i = 0; i < moves; i++) {
+            int column = ThreadLocalRandom.current().nextInt(7);
+            if(!position.canPlay(column) || position.isWinningMove(column)) break;
+            position.play(column);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,271 @@
+package server;
+
+import ai.NTupleNetwork;
+import core.Position;
+
+/**
+ * Iterative deepening alpha-beta search that can be paused after any number of nodes and resumed later, possibly
+ * on another thread. The recursion is kept on explicit per-ply arrays so a search holds no thread state between
+ * slices. Leaves are scored with an n-tuple network when one fits the board, otherwise by counting open threats.
+ * <p>
+ * The best move from the deepest completed iteration is always available, so a search can be stopped at any point
+ * and still give a sensible answer. Instances are not thread safe - callers must hand a search between threads
+ * through a synchronising queue.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+final class SlicedSearch {
+
+    /** Score of a win on the next move - earlier wins score higher */
+    private static final int WIN = 1_000_000;
+    /** Marks a node that was pushed rather than scored */
+    private static final int PUSHED = Integer.MIN_VALUE;
+    /** Leaf score for a network value of 1 */
+    private static final int EVAL_SCALE = 10_000;
+    /** Leaf score per open threat when no network is available */
+    private static final int THREAT_SCALE = 100;
+
+    // INSTANCE VARIABLES
+    /** Position being searched - restored to the root between iterations */
+    private final Position position;
+    /** Leaf evaluator, null to count threats */
+    private final NTupleNetwork evaluator;
+    private final int columns;
+    /** Columns in search order, centre first */
+    private final int[] columnOrder;
+    /** Ordered moves, one row of columns per ply */
+    private final long[] moves;
+    /** Ordering scores matching moves */
+    private final int[] scores;
+    private final int[] count;
+    private final int[] next;
+    private final int[] alpha;
+    private final int[] beta;
+    private final int[] best;
+    /** Deepest iteration this search will run */
+    private int depthLimit;
+    /** Depth of iteration in progress */
+    private int depth;
+    /** Top of ply stack, -1 between iterations */
+    private int top = -1;
+    /** Best root move of the iteration in progress */
+    private long iterationMove;
+    /** Best root move of the deepest completed iteration, or the first ordered move before any completes */
+    private long bestMove;
+    private int completedDepth;
+    private boolean finished;
+    /** Set if the search was stopped or had its depth limit lowered before it finished */
+    private boolean cutShort;
+    private long nodes;
+
+    /**
+     * Constructor - decides trivial positions straight away
+     * @param root position to move from, copied
+     * @param evaluator leaf evaluator, ignored unless it fits the board geometry
+     * @param depthLimit deepest iteration to run
+     */
+    SlicedSearch(Position root, NTupleNetwork evaluator, int depthLimit) {
+        this.position = new Position(root);
+        this.evaluator = evaluator != null && evaluator.getRows() == root.getRows()
+                && evaluator.getColumns() == root.getColumns() ? evaluator : null;
+        this.columns = root.getColumns();
+        int empty = root.getRows() * columns - root.getMoves();
+        this.depthLimit = Math.max(1, Math.min(depthLimit, empty));
+        this.columnOrder = new int[columns];
+        for(int i = 0; i < columns; i++) columnOrder[i] = columns / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        int plies = this.depthLimit + 1;
+        this.moves = new long[plies * columns];
+        this.scores = new int[plies * columns];
+        this.count = new int[plies];
+        this.next = new int[plies];
+        this.alpha = new int[plies];
+        this.beta = new int[plies];
+        this.best = new int[plies];
+
+        if(empty == 0) {
+            finished = true;
+            return;
+        }
+        long possible = position.getPossible();
+        long wins = position.winningCells(position.getCurrent()) & possible;
+        long safe = wins != 0 ? wins & -wins : position.getNonLosingMoves();
+        // no need to search a win, a forced reply or a lost position
+        if(wins != 0 || safe == 0 || (safe & (safe - 1)) == 0) {
+            bestMove = safe != 0 ? safe : possible;
+            finished = true;
+            return;
+        }
+        bestMove = order(0, safe, 0);
+    }
+
+    /**
+     * Runs search for up to the given number of nodes
+     * @param budget nodes to visit before pausing
+     */
+    void run(long budget) {
+        long stop = nodes + budget;
+        while(!finished && nodes < stop) {
+            if(top < 0) startIteration();
+            int p = top;
+            if(next[p] == count[p]) {
+                top--;
+                if(top < 0) finishIteration();
+                else childReturned(top, best[p]);
+                continue;
+            }
+            position.playMove(moves[p * columns + next[p]]);
+            nodes++;
+            int value = open(p + 1);
+            if(value != PUSHED) childReturned(p, value);
+        }
+    }
+
+    /**
+     * Stops deepening after the iteration in progress, or straight away if none has completed yet
+     * @param limit deepest iteration to run
+     */
+    void limitDepth(int limit) {
+        if(finished || limit >= depthLimit) return;
+        depthLimit = Math.max(1, limit);
+        cutShort = true;
+        if(depth > depthLimit) abandonIteration();
+    }
+
+    /** Stops search, keeping the best move found so far */
+    void stop() {
+        if(finished) return;
+        if(top >= 0) abandonIteration();
+        cutShort = true;
+        finished = true;
+    }
+
+    /** @return true once no more iterations will run */
+    boolean isFinished() { return finished; }
+
+    /** @return true if the search was stopped or had its depth limit lowered before it finished */
+    boolean wasCutShort() { return cutShort; }
+
+    /** @return deepest completed iteration, 0 if none has completed */
+    int getCompletedDepth() { return completedDepth; }
+
+    /** @return deepest iteration this search will run */
+    int getDepthLimit() { return depthLimit; }
+
+    /** @return nodes visited so far */
+    long getNodes() { return nodes; }
+
+    /**
+     * @return best column found so far, 1 based to match {@link core.Connect4.Board}, or 0 if board is full
+     */
+    int getBestColumn() {
+        if(bestMove == 0) return 0;
+        return Long.numberOfTrailingZeros(bestMove) / (position.getRows() + 1) + 1;
+    }
+
+    // HELPER METHODS
+
+    private void startIteration() {
+        depth = depth == 0 ? 1 : depth + 1;
+        iterationMove = 0;
+        // the previous best move is searched first so cut-offs come early
+        order(0, position.getNonLosingMoves(), bestMove);
+        alpha[0] = -WIN - 1;
+        beta[0] = WIN + 1;
+        best[0] = -WIN - 1;
+        next[0] = 0;
+        top = 0;
+    }
+
+    private void finishIteration() {
+        bestMove = iterationMove;
+        completedDepth = depth;
+        // a forced win or loss will not change with more depth
+        if(depth >= depthLimit || Math.abs(best[0]) >= WIN - position.getRows() * columns - 1) finished = true;
+    }
+
+    /** Unwinds ply stack back to the root, discarding the iteration in progress */
+    private void abandonIteration() {
+        while(top > 0) {
+            top--;
+            position.undoMove(moves[top * columns + next[top]]);
+        }
+        top = -1;
+        if(completedDepth >= depthLimit) finished = true;
+        depth = completedDepth;
+    }
+
+    /**
+     * Scores the position just reached at ply p, or pushes it to be searched
+     * @return score for the player to move, or {@link #PUSHED}
+     */
+    private int open(int p) {
+        int played = position.getMoves();
+        if(position.canWinNext()) return WIN - played;
+        if(position.isFull()) return 0;
+        if(p == depth) return evaluate();
+        long safe = position.getNonLosingMoves();
+        if(safe == 0) return -(WIN - played - 1);
+        order(p, safe, 0);
+        alpha[p] = -beta[p - 1];
+        beta[p] = -alpha[p - 1];
+        best[p] = -WIN - 1;
+        next[p] = 0;
+        top = p;
+        return PUSHED;
+    }
+
+    /**
+     * Folds the score of the child just searched into ply p
+     * @param value score from the child's point of view
+     */
+    private void childReturned(int p, int value) {
+        long move = moves[p * columns + next[p]];
+        position.undoMove(move);
+        int score = -value;
+        if(score > best[p]) {
+            best[p] = score;
+            if(p == 0) iterationMove = move;
+        }
+        if(score > alpha[p]) alpha[p] = score;
+        next[p] = alpha[p] >= beta[p] ? count[p] : next[p] + 1;
+    }
+
+    /**
+     * Fills ply p with moves ordered by the threats they create, centre columns first among equals
+     * @param first move to put ahead of all others, 0 for none
+     * @return first move in order
+     */
+    private long order(int p, long candidates, long first) {
+        int base = p * columns;
+        int n = 0;
+        for(int i = 0; i < columns; i++) {
+            long move = candidates & position.getColumnMask(columnOrder[i]);
+            if(move == 0) continue;
+            int score = move == first ? Integer.MAX_VALUE : position.moveScore(move);
+            int j = base + n++;
+            while(j > base && scores[j - 1] < score) {
+                moves[j] = moves[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            moves[j] = move;
+            scores[j] = score;
+        }
+        count[p] = n;
+        return moves[base];
+    }
+
+    /**
+     * @return heuristic score of a quiet position for the player to move
+     */
+    private int evaluate() {
+        if(evaluator != null) {
+            float value = evaluator.evaluate(position.getFirst(), position.getSecond());
+            if((position.getMoves() & 1) != 0) value = -value;
+            return (int) (value * EVAL_SCALE);
+        }
+        long own = position.winningCells(position.getCurrent());
+        long other = position.winningCells(position.getCurrent() ^ position.getMask());
+        return (Long.bitCount(own) - Long.bitCount(other)) * THREAT_SCALE;
+    }
+}
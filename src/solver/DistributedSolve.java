@@ -0,0 +1,144 @@
+package solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Command line entry point for distributed solving.
+ * <ul>
+ *     <li>{@code coordinator port rows columns splitDepth [moves]} - waits for workers on port and prints the result</li>
+ *     <li>{@code worker host port [tableBits]} - solves subtrees for a coordinator</li>
+ *     <li>{@code local workers rows columns splitDepth [moves] [--kill-one]} - coordinator plus worker processes on this
+ *     host; {@code --kill-one} kills the first worker partway through to exercise retries</li>
+ * </ul>
+ * Moves are 1 based column digits played from the empty board before solving.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class DistributedSolve {
+
+    /** Default log2 of worker transposition table entries - 2^24 entries is about 150MB */
+    private static final int DEFAULT_TABLE_BITS = 24;
+
+    /**
+     * Runs coordinator or worker
+     * @param args mode followed by mode arguments
+     * @throws Exception if solving fails
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            usage();
+            return;
+        }
+        switch (args[0]) {
+            case "coordinator":
+                if(args.length < 5 || !validSplitDepth(args[4])) { usage(); return; }
+                try(ServerSocket server = new ServerSocket(Integer.parseInt(args[1]))) {
+                    coordinate(server, Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                            args.length > 5 ? args[5] : "", () -> true, null);
+                }
+                break;
+            case "worker":
+                if(args.length < 3) { usage(); return; }
+                int tableBits = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_TABLE_BITS;
+                int solved = new SolveWorker(args[1], Integer.parseInt(args[2]), tableBits).run();
+                System.out.println("Worker solved " + solved + " subtrees");
+                break;
+            case "local":
+                if(args.length < 5 || !validSplitDepth(args[4])) { usage(); return; }
+                local(args);
+                break;
+            default:
+                usage();
+        }
+    }
+
+    /**
+     * Starts worker processes on this host and coordinates them
+     * @param args local mode arguments
+     * @throws Exception if solving fails
+     */
+    private static void local(String[] args) throws Exception {
+        int workers = Integer.parseInt(args[1]);
+        String moves = args.length > 5 && !args[5].equals("--kill-one") ? args[5] : "";
+        boolean killOne = args[args.length - 1].equals("--kill-one");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        try(ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            for(int i = 0; i < workers; i++) {
+                ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        DistributedSolve.class.getName(), "worker", "127.0.0.1", String.valueOf(server.getLocalPort()), "22");
+                builder.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.INHERIT);
+                processes.add(builder.start());
+            }
+            coordinate(server, Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]), moves,
+                    () -> processes.stream().anyMatch(Process::isAlive), killOne ? processes.get(0) : null);
+        } finally {
+            // workers still finishing a stolen duplicate are no longer needed
+            for(Process process : processes) {
+                if(!process.waitFor(2, TimeUnit.SECONDS)) process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Solves and prints result
+     * @param server socket workers connect to
+     * @param workersAlive false once every worker that could still connect has exited
+     * @param victim worker process to kill partway through, or null
+     */
+    private static void coordinate(ServerSocket server, int rows, int columns, int splitDepth, String moves,
+                                   BooleanSupplier workersAlive, Process victim) throws IOException, InterruptedException {
+        SolveCoordinator coordinator = new SolveCoordinator(rows, columns, moves, splitDepth);
+        System.out.println("Solving " + rows + "x" + columns + " from '" + moves + "' as " +
+                coordinator.getTaskCount() + " subtrees on port " + server.getLocalPort());
+        if(victim != null) {
+            Thread killer = new Thread(() -> {
+                try {
+                    Thread.sleep(1000);
+                    System.out.println("Killing worker process " + victim.pid());
+                    victim.destroyForcibly();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            killer.setDaemon(true);
+            killer.start();
+        }
+        long start = System.nanoTime();
+        int[] result = coordinator.solve(server, workersAlive);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Score: " + result[0] + " (positive: player to move wins)");
+        StringBuilder perMove = new StringBuilder("Move scores:");
+        for(int column = 1; column < result.length; column++)
+            perMove.append(' ').append(column).append('=').append(result[column] == Integer.MIN_VALUE ? "full" : String.valueOf(result[column]));
+        System.out.println(perMove);
+        System.out.println("Nodes: " + coordinator.getNodeCount() + ", steals: " + coordinator.getStealCount() +
+                ", retries: " + coordinator.getRetryCount() + ", time: " + elapsed + " ms");
+    }
+
+    /**
+     * @param arg split depth argument
+     * @return true if arg is a whole number of at least 1, otherwise prints why not
+     */
+    private static boolean validSplitDepth(String arg) {
+        try {
+            if(Integer.parseInt(arg) >= 1) return true;
+        } catch (NumberFormatException ignored) {
+        }
+        System.out.println("splitDepth must be at least 1: " + arg);
+        return false;
+    }
+
+    /** Prints usage */
+    private static void usage() {
+        System.out.println("Usage: DistributedSolve coordinator port rows columns splitDepth [moves]");
+        System.out.println("       DistributedSolve worker host port [tableBits]");
+        System.out.println("       DistributedSolve local workers rows columns splitDepth [moves] [--kill-one]");
+    }
+}
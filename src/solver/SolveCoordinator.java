@@ -0,0 +1,374 @@
+package solver;
+
+import core.Position;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Coordinator for solving a position across several worker processes.
+ * <p>
+ * The game tree is split into subtrees by every opening sequence of a fixed length played from the root position;
+ * transpositions are merged so each distinct subtree is solved once. Workers connect over plain sockets and are
+ * handed one subtree at a time. When the queue runs dry, idle workers steal a duplicate copy of a subtree still in
+ * flight on another worker, and whichever copy finishes first is used, so a slow or stuck worker cannot hold up the
+ * end of the run. Subtrees held by a worker whose connection drops are put back at the front of the queue. The solve
+ * is abandoned if the last connected worker drops while subtrees are still unsolved, rather than waiting for workers
+ * that may never come.
+ * Once every subtree is solved the results are combined by negamax over the opening tree.
+ * <p>
+ * Protocol, one line per message: coordinator sends {@code TASK id rows columns moves} and finally {@code DONE};
+ * the worker answers each task with {@code RESULT id score nodes}. Moves are 1 based column digits, {@code -} for none.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class SolveCoordinator {
+
+    /** Maximum copies of one subtree in flight at once, including stolen duplicates */
+    private static final int MAX_COPIES = 2;
+    /** Times a subtree may be lost to a failed worker before the solve is abandoned */
+    private static final int MAX_RETRIES = 3;
+
+    // INSTANCE VARIABLES
+    /** Root position, as 1 based column digits */
+    private final String rootMoves;
+    /** Number of rows on board */
+    private final int rows;
+    /** Number of columns on board */
+    private final int columns;
+    /** Length of opening sequences used to split the tree */
+    private final int splitDepth;
+    /** Distinct subtrees by position key */
+    private final Map<Long, Task> tasks;
+    /** Subtrees waiting for a worker */
+    private final ConcurrentLinkedDeque<Task> pending;
+    /** Subtrees without a result */
+    private final AtomicInteger unsolved;
+    /** Released when every subtree is solved or the solve is abandoned */
+    private final CountDownLatch finished;
+    /** Nodes reported by workers, including duplicate copies */
+    private final AtomicLong nodes = new AtomicLong();
+    /** Number of duplicate copies handed out */
+    private final AtomicInteger steals = new AtomicInteger();
+    /** Number of subtrees requeued after a worker failed */
+    private final AtomicInteger retries = new AtomicInteger();
+    /** Workers currently connected */
+    private final AtomicInteger connected = new AtomicInteger();
+    /** Set if a subtree failed too many times */
+    private volatile String failure;
+
+    /**
+     * Constructor, splits tree into subtrees
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @param rootMoves moves leading to the position to solve, as 1 based column digits
+     * @param splitDepth length of opening sequences used to split the tree, at least 1
+     * @throws IllegalArgumentException if splitDepth is less than 1 or rootMoves is not a valid game in progress
+     */
+    public SolveCoordinator(int rows, int columns, String rootMoves, int splitDepth) {
+        if(splitDepth < 1) throw new IllegalArgumentException("Split depth must be at least 1: " + splitDepth);
+        this.rows = rows;
+        this.columns = columns;
+        this.rootMoves = rootMoves;
+        this.splitDepth = splitDepth;
+        this.tasks = new HashMap<>();
+        this.pending = new ConcurrentLinkedDeque<>();
+        split(replay(rows, columns, rootMoves), new StringBuilder(rootMoves), 0);
+        this.pending.addAll(tasks.values());
+        this.unsolved = new AtomicInteger(tasks.size());
+        this.finished = new CountDownLatch(1);
+        if(tasks.isEmpty()) finished.countDown();
+    }
+
+    /** @return number of distinct subtrees */
+    public int getTaskCount() { return tasks.size(); }
+
+    /** @return nodes searched by workers, including stolen duplicates */
+    public long getNodeCount() { return nodes.get(); }
+
+    /** @return number of stolen duplicate subtrees handed out */
+    public int getStealCount() { return steals.get(); }
+
+    /** @return number of subtrees requeued after a worker failed */
+    public int getRetryCount() { return retries.get(); }
+
+    /**
+     * Accepts workers until every subtree is solved
+     * @param server socket workers connect to - left open
+     * @return score of root position for the player to move, then the score of each root move from the point of view
+     * of the player making it, or {@link Integer#MIN_VALUE} for a full column
+     * @throws IOException if the solve is abandoned after repeated worker failures or once every worker has gone
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    public int[] solve(ServerSocket server) throws IOException, InterruptedException {
+        return solve(server, () -> true);
+    }
+
+    /**
+     * Accepts workers until every subtree is solved, giving up once no worker is connected and none can still connect
+     * @param server socket workers connect to - left open
+     * @param workersAlive false once every worker that could still connect has exited, such as local worker processes
+     * @return score of root position for the player to move, then the score of each root move from the point of view
+     * of the player making it, or {@link Integer#MIN_VALUE} for a full column
+     * @throws IOException if the solve is abandoned after repeated worker failures or once every worker has gone
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    public int[] solve(ServerSocket server, BooleanSupplier workersAlive) throws IOException, InterruptedException {
+        Thread acceptor = new Thread(() -> {
+            while(finished.getCount() > 0) {
+                try {
+                    Socket socket = server.accept();
+                    Thread handler = new Thread(() -> serve(socket), "solve-worker-" + socket.getPort());
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    if(!server.isClosed()) System.out.println("Accept failed: " + e.getMessage());
+                    return;
+                }
+            }
+        }, "solve-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        while(!finished.await(100, TimeUnit.MILLISECONDS)) {
+            // a worker's last result is handled before its connection is counted as gone
+            if(connected.get() == 0 && !workersAlive.getAsBoolean())
+                abandon("Every worker exited with " + unsolved.get() + " subtrees unsolved");
+        }
+        // a solve completed while being abandoned still stands
+        if(unsolved.get() > 0) throw new IOException(failure);
+        return combine();
+    }
+
+    /**
+     * Hands subtrees to a single worker until the solve finishes or the worker fails
+     * @param socket connection to worker
+     */
+    private void serve(Socket socket) {
+        connected.incrementAndGet();
+        Task task = null;
+        try(Socket s = socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            while(true) {
+                task = nextTask();
+                if(task == null) {
+                    out.println("DONE");
+                    return;
+                }
+                out.println("TASK " + task.id + " " + rows + " " + columns + " " + (task.moves.isEmpty() ? "-" : task.moves));
+                String line = in.readLine();
+                if(line == null) throw new SocketException("Worker closed connection");
+                String[] parts = line.split(" ");
+                if(parts.length != 4 || !parts[0].equals("RESULT") || Integer.parseInt(parts[1]) != task.id)
+                    throw new IOException("Unexpected reply from worker: " + line);
+                nodes.addAndGet(Long.parseLong(parts[3]));
+                task.inFlight.decrementAndGet();
+                if(task.complete(Integer.parseInt(parts[2])) && unsolved.decrementAndGet() == 0) finished.countDown();
+                task = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            if(task != null) requeue(task, e);
+        } finally {
+            if(connected.decrementAndGet() == 0 && finished.getCount() > 0)
+                abandon("Last worker disconnected with " + unsolved.get() + " subtrees unsolved");
+        }
+    }
+
+    /**
+     * @return next subtree for an idle worker, a stolen duplicate if the queue is empty, or null once solved
+     */
+    private Task nextTask() {
+        while(finished.getCount() > 0) {
+            Task task;
+            while((task = pending.pollFirst()) != null) {
+                if(task.solved) continue;
+                task.inFlight.incrementAndGet();
+                return task;
+            }
+            // queue is empty - duplicate the subtree with the fewest copies in flight
+            Task steal = null;
+            for(Task candidate : tasks.values()) {
+                if(candidate.solved || candidate.inFlight.get() >= MAX_COPIES) continue;
+                if(steal == null || candidate.inFlight.get() < steal.inFlight.get()) steal = candidate;
+            }
+            if(steal != null && steal.inFlight.incrementAndGet() <= MAX_COPIES) {
+                steals.incrementAndGet();
+                return steal;
+            }
+            if(steal != null) steal.inFlight.decrementAndGet();
+            try {
+                finished.await(50, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns subtree lost with a failed worker to the front of the queue
+     * @param task subtree the worker was solving
+     * @param cause failure
+     */
+    private void requeue(Task task, Exception cause) {
+        task.inFlight.decrementAndGet();
+        if(task.solved) return;
+        System.out.println("Worker failed on subtree " + task.moves + ": " + cause.getMessage());
+        if(task.attempts.incrementAndGet() > MAX_RETRIES) {
+            abandon("Subtree " + task.moves + " failed " + MAX_RETRIES + " times");
+            return;
+        }
+        retries.incrementAndGet();
+        pending.offerFirst(task);
+    }
+
+    /**
+     * Gives up on the solve, keeping the first reason given
+     * @param reason failure reported by {@link #solve(ServerSocket, BooleanSupplier)}
+     */
+    private synchronized void abandon(String reason) {
+        if(finished.getCount() == 0) return;
+        failure = reason;
+        finished.countDown();
+    }
+
+    /**
+     * Enumerates subtrees below a position, resolving positions that end before the split depth directly.
+     * Below the root a position the player to move can win at once needs no subtree; the root itself is still
+     * split past its winning moves so {@link #combine()} can score every other root move.
+     * @param position position to split - restored before returning
+     * @param moves moves leading to position
+     * @param depth number of moves played below the root
+     */
+    private void split(Position position, StringBuilder moves, int depth) {
+        if(position.isFull() || (depth > 0 && position.canWinNext())) return;
+        if(depth == splitDepth) {
+            long key = position.getKey();
+            if(!tasks.containsKey(key)) tasks.put(key, new Task(tasks.size(), moves.toString()));
+            return;
+        }
+        for(int column = 0; column < columns; column++) {
+            if(!position.canPlay(column) || position.isWinningMove(column)) continue;
+            position.play(column);
+            moves.append((char) ('1' + column));
+            split(position, moves, depth + 1);
+            moves.setLength(moves.length() - 1);
+            position.undo(column);
+        }
+    }
+
+    /**
+     * Combines subtree results by negamax over the opening tree
+     * @return root score followed by the score of each root move
+     */
+    private int[] combine() {
+        Position root = replay(rows, columns, rootMoves);
+        int[] result = new int[columns + 1];
+        result[0] = Integer.MIN_VALUE;
+        for(int column = 0; column < columns; column++) {
+            if(!root.canPlay(column)) {
+                result[column + 1] = Integer.MIN_VALUE;
+                continue;
+            }
+            int score;
+            if(root.isWinningMove(column)) {
+                score = (rows * columns + 1 - root.getMoves()) / 2;
+            } else {
+                root.play(column);
+                score = -value(root, 1);
+                root.undo(column);
+            }
+            result[column + 1] = score;
+            result[0] = Math.max(result[0], score);
+        }
+        return result;
+    }
+
+    /**
+     * @param position position within the opening tree - restored before returning
+     * @param depth number of moves played below the root
+     * @return exact score of position for the player to move
+     * @throws IllegalStateException if a position at the split depth has no subtree
+     */
+    private int value(Position position, int depth) {
+        int cells = rows * columns;
+        if(position.canWinNext()) return (cells + 1 - position.getMoves()) / 2;
+        if(position.isFull()) return 0;
+        if(depth == splitDepth) {
+            Task task = tasks.get(position.getKey());
+            if(task == null)
+                throw new IllegalStateException("No subtree for position " + Long.toHexString(position.getKey()) +
+                        " at split depth " + splitDepth + " below '" + rootMoves + "'");
+            return task.score;
+        }
+        int best = Integer.MIN_VALUE;
+        for(int column = 0; column < columns; column++) {
+            if(!position.canPlay(column)) continue;
+            position.play(column);
+            best = Math.max(best, -value(position, depth + 1));
+            position.undo(column);
+        }
+        return best;
+    }
+
+    /**
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @param moves 1 based column digits
+     * @return position after moves
+     */
+    static Position replay(int rows, int columns, String moves) {
+        Position position = new Position(rows, columns);
+        for(int i = 0; i < moves.length(); i++) {
+            int column = moves.charAt(i) - '1';
+            if(column < 0 || column >= columns || !position.canPlay(column) || position.isWinningMove(column))
+                throw new IllegalArgumentException("Invalid move sequence: " + moves);
+            position.play(column);
+        }
+        return position;
+    }
+
+    /**
+     * Single subtree and its result
+     */
+    private static final class Task {
+        private final int id;
+        private final String moves;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile boolean solved;
+        private volatile int score;
+
+        private Task(int id, String moves) {
+            this.id = id;
+            this.moves = moves;
+        }
+
+        /**
+         * @param score score reported by a worker
+         * @return true if this was the first result for the subtree
+         */
+        private synchronized boolean complete(int score) {
+            if(solved) return false;
+            this.score = score;
+            this.solved = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package solver;
+
+import core.Position;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker process for {@link SolveCoordinator} - solves subtrees one at a time with a single {@link Solver}, whose
+ * transposition table is kept across subtrees since neighbouring openings share much of their tree.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class SolveWorker {
+
+    // INSTANCE VARIABLES
+    /** Coordinator host */
+    private final String host;
+    /** Coordinator port */
+    private final int port;
+    /** Solver reused for every subtree */
+    private final Solver solver;
+
+    /**
+     * Constructor
+     * @param host coordinator host
+     * @param port coordinator port
+     * @param tableBits log2 of transposition table entries
+     */
+    public SolveWorker(String host, int port, int tableBits) {
+        this.host = host;
+        this.port = port;
+        this.solver = new Solver(tableBits);
+    }
+
+    /**
+     * Connects to coordinator, retrying for a short while if it is not up yet, and solves subtrees until told to stop
+     * @return number of subtrees solved
+     * @throws IOException if the coordinator cannot be reached or the connection fails
+     * @throws InterruptedException if interrupted while waiting to retry the connection
+     */
+    public int run() throws IOException, InterruptedException {
+        Socket socket = null;
+        for(int attempt = 0; socket == null; attempt++) {
+            try {
+                socket = new Socket(host, port);
+            } catch (ConnectException e) {
+                if(attempt >= 50) throw e;
+                Thread.sleep(100);
+            }
+        }
+        int solved = 0;
+        try(Socket s = socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while((line = in.readLine()) != null && !line.equals("DONE")) {
+                String[] parts = line.split(" ");
+                if(parts.length != 5 || !parts[0].equals("TASK")) throw new IOException("Unexpected message: " + line);
+                String moves = parts[4].equals("-") ? "" : parts[4];
+                Position position = SolveCoordinator.replay(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), moves);
+                solver.resetNodeCount();
+                int score = solver.solve(position);
+                out.println("RESULT " + parts[1] + " " + score + " " + solver.getNodeCount());
+                solved++;
+            }
+        }
+        return solved;
+    }
+}
@@ -0,0 +1,154 @@
+package solver;
+
+import core.Position;
+
+import java.util.Arrays;
+
+/**
+ * Exact Connect4 solver - negamax with alpha-beta pruning, a transposition table, threat based move ordering and
+ * a null window search over the score range.
+ * <p>
+ * Scores are from the point of view of the player to move: 0 for a draw, positive if the player to move wins and
+ * negative if it loses, with larger magnitudes for earlier wins. A win with the player's last token on an otherwise
+ * full board scores 1. Instances are not thread safe.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class Solver {
+
+    // INSTANCE VARIABLES
+    /** Transposition table keys, 0 for an empty slot */
+    private final long[] keys;
+    /** Transposition table upper bounds, stored as score - minimum score + 1 */
+    private final byte[] values;
+    /** Shift taking a hashed key to a table index */
+    private final int indexShift;
+    /** Number of columns the tables below were built for */
+    private int orderedColumns;
+    /** Columns in search order, centre first */
+    private int[] columnOrder = new int[0];
+    /** Move ordering scratch, one row of columns per search depth */
+    private long[] orderedMoves = new long[0];
+    /** Move ordering scores matching orderedMoves */
+    private int[] orderedScores = new int[0];
+    /** Nodes visited since last reset */
+    private long nodes;
+
+    /**
+     * Constructor
+     * @param tableBits log2 of the number of transposition table entries
+     */
+    public Solver(int tableBits) {
+        if(tableBits < 1 || tableBits > 30) throw new IllegalArgumentException("Table size out of range");
+        this.keys = new long[1 << tableBits];
+        this.values = new byte[1 << tableBits];
+        this.indexShift = 64 - tableBits;
+    }
+
+    /**
+     * @return nodes visited since last call to {@link #resetNodeCount()}
+     */
+    public long getNodeCount() { return nodes; }
+
+    /** Resets node counter */
+    public void resetNodeCount() { nodes = 0; }
+
+    /**
+     * @param position position to score - left unchanged
+     * @return exact score for the player to move
+     */
+    public int solve(Position position) {
+        int cells = position.getRows() * position.getColumns();
+        if(position.canWinNext()) return (cells + 1 - position.getMoves()) / 2;
+        if(position.isFull()) return 0;
+        prepare(position);
+        int min = -(cells - position.getMoves()) / 2;
+        int max = (cells + 1 - position.getMoves()) / 2;
+        // narrow the score range with null window searches, biased towards small magnitudes
+        while(min < max) {
+            int med = min + (max - min) / 2;
+            if(med <= 0 && min / 2 < med) med = min / 2;
+            else if(med >= 0 && max / 2 > med) med = max / 2;
+            int result = negamax(position, med, med + 1);
+            if(result <= med) max = result;
+            else min = result;
+        }
+        return min;
+    }
+
+    /**
+     * Negamax search returning the exact score if it lies within the window, otherwise a bound on the far side of it
+     * @param position position to search - restored before returning
+     * @param alpha lower bound of window
+     * @param beta upper bound of window
+     * @return score, bound or exact
+     */
+    private int negamax(Position position, int alpha, int beta) {
+        nodes++;
+        int cells = position.getRows() * position.getColumns();
+        int moves = position.getMoves();
+        long next = position.getNonLosingMoves();
+        if(next == 0) return -(cells - moves) / 2;
+        if(moves >= cells - 2) return 0;
+
+        int min = -(cells - 2 - moves) / 2;
+        if(alpha < min) {
+            alpha = min;
+            if(alpha >= beta) return alpha;
+        }
+        int max = (cells - 1 - moves) / 2;
+        long key = position.getKey();
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> indexShift);
+        if(keys[slot] == key) max = values[slot] - cells / 2 - 1;
+        if(beta > max) {
+            beta = max;
+            if(alpha >= beta) return beta;
+        }
+
+        // order moves by the number of threats they create, centre columns first among equals
+        long[] ordered = orderedMoves;
+        int[] scores = orderedScores;
+        int base = moves * orderedColumns;
+        int count = 0;
+        for(int i = 0; i < orderedColumns; i++) {
+            long move = next & position.getColumnMask(columnOrder[i]);
+            if(move == 0) continue;
+            int score = position.moveScore(move);
+            int j = base + count++;
+            while(j > base && scores[j - 1] < score) {
+                ordered[j] = ordered[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            ordered[j] = move;
+            scores[j] = score;
+        }
+
+        for(int i = base; i < base + count; i++) {
+            position.playMove(ordered[i]);
+            int score = -negamax(position, -beta, -alpha);
+            position.undoMove(ordered[i]);
+            if(score >= beta) return score;
+            if(score > alpha) alpha = score;
+        }
+        keys[slot] = key;
+        values[slot] = (byte) (alpha + cells / 2 + 1);
+        return alpha;
+    }
+
+    /**
+     * Builds column order and scratch buffers for board geometry, clearing the transposition table if it changed
+     * @param position position about to be searched
+     */
+    private void prepare(Position position) {
+        int columns = position.getColumns();
+        int cells = position.getRows() * columns;
+        if(columns == orderedColumns && orderedMoves.length == cells * columns) return;
+        columnOrder = new int[columns];
+        for(int i = 0; i < columns; i++) columnOrder[i] = columns / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        orderedColumns = columns;
+        orderedMoves = new long[cells * columns];
+        orderedScores = new int[cells * columns];
+        Arrays.fill(keys, 0);
+    }
+}
@@ -0,0 +1,267 @@
+package solver;
+
+import core.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only endgame tablebase - the exact result of every reachable position with at most a fixed number of empty
+ * cells on one board geometry, memory-mapped from a file written by {@link TablebaseGenerator}.
+ * <p>
+ * Results take 2 bits each and are packed densely in the order given by a minimal perfect hash of the position keys,
+ * so the file holds no keys at all. The hash is a cascade of bit arrays, each with a rank count every 512 bits, so a
+ * probe reads about one and a half cache lines whatever the size of the table. Mirrored positions share an entry.
+ * Because no keys are stored, a probe cannot tell a covered position from one that is not: only positions reached by
+ * legal play, with the game not yet won, give meaningful results. Instances are thread safe.
+ * <p>
+ * File layout, big endian: magic, version, rows, columns, maximum empty cells and hash level count as ints, then the
+ * number of positions as a long, then the block count of each level as a long. Each level follows as blocks of a
+ * long rank followed by eight longs of hash bits, and the packed results come last.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public final class Tablebase {
+
+    /** System property naming tablebase loaded by {@link #getDefault()} */
+    public static final String TABLEBASE_PROPERTY = "connect4.tablebase";
+    /** Result for a position outside the table */
+    public static final int UNKNOWN = 0;
+    /** Result when the player to move loses with best play */
+    public static final int LOSS = 1;
+    /** Result when best play draws */
+    public static final int DRAW = 2;
+    /** Result when the player to move wins with best play */
+    public static final int WIN = 3;
+
+    /** File identifier - "C4TB" */
+    static final int MAGIC = 0x43345442;
+    /** File format version */
+    static final int VERSION = 1;
+    /** Bytes before level block counts */
+    static final int HEADER_BYTES = 32;
+    /** Hash bits per block */
+    static final int BLOCK_BITS = 512;
+    /** Bytes per block - a rank and eight words of hash bits */
+    static final int BLOCK_BYTES = 72;
+
+    // INSTANCE VARIABLES
+    /** Mapped file */
+    private final ByteBuffer data;
+    private final int rows;
+    private final int columns;
+    private final int maxEmpty;
+    private final long count;
+    /** Byte offset of each hash level */
+    private final int[] levelOffsets;
+    /** Number of hash bits in each level */
+    private final long[] levelBits;
+    /** Byte offset of packed results */
+    private final int valuesOffset;
+
+    /**
+     * Constructor
+     * @param data complete tablebase file
+     * @throws IOException if file is not a tablebase
+     */
+    private Tablebase(ByteBuffer data) throws IOException {
+        this.data = data;
+        if(data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) throw new IOException("Not a tablebase file");
+        if(data.getInt(4) != VERSION) throw new IOException("Unsupported tablebase version " + data.getInt(4));
+        this.rows = data.getInt(8);
+        this.columns = data.getInt(12);
+        this.maxEmpty = data.getInt(16);
+        int levels = data.getInt(20);
+        this.count = data.getLong(24);
+        this.levelOffsets = new int[levels];
+        this.levelBits = new long[levels];
+        long offset = HEADER_BYTES + 8L * levels;
+        for(int i = 0; i < levels; i++) {
+            long blocks = data.getLong(HEADER_BYTES + 8 * i);
+            levelOffsets[i] = (int) offset;
+            levelBits[i] = blocks * BLOCK_BITS;
+            offset += blocks * BLOCK_BYTES;
+        }
+        this.valuesOffset = (int) offset;
+        if(offset + valuesBytes(count) != data.capacity()) throw new IOException("Truncated tablebase file");
+    }
+
+    /**
+     * Maps tablebase file read-only
+     * @param path file to map
+     * @return tablebase
+     * @throws IOException if file cannot be read or is not a tablebase
+     */
+    public static Tablebase open(Path path) throws IOException {
+        return map(path, FileChannel.MapMode.READ_ONLY);
+    }
+
+    /**
+     * Maps tablebase file
+     * @param path file to map
+     * @param mode read-only, or read-write while the generator fills in results
+     * @return tablebase
+     * @throws IOException if file cannot be read or is not a tablebase
+     */
+    static Tablebase map(Path path, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[] {StandardOpenOption.READ}
+                : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try(FileChannel channel = FileChannel.open(path, options)) {
+            if(channel.size() > Integer.MAX_VALUE) throw new IOException("Tablebase too large to map");
+            // the mapping stays valid after the channel is closed
+            return new Tablebase(channel.map(mode, 0, channel.size()));
+        }
+    }
+
+    /** @return number of rows on board */
+    public int getRows() { return rows; }
+
+    /** @return number of columns on board */
+    public int getColumns() { return columns; }
+
+    /** @return most empty cells a covered position may have */
+    public int getMaxEmpty() { return maxEmpty; }
+
+    /** @return number of positions stored, counting mirrored pairs once */
+    public long getCount() { return count; }
+
+    /**
+     * @param position position reached by legal play, with the game not yet won
+     * @return result for the player to move, or {@link #UNKNOWN} if the position is outside the table
+     */
+    public int probe(Position position) {
+        if(!covers(position)) return UNKNOWN;
+        long index = index(canonicalKey(position));
+        return index < 0 ? UNKNOWN : getValue(index);
+    }
+
+    /**
+     * Chooses a move that keeps the best result, taking an immediate win if there is one
+     * @param position position reached by legal play, with the game not yet won - left unchanged
+     * @return column index of chosen move, or -1 if the position is outside the table
+     */
+    public int selectMove(Position position) {
+        if(!covers(position)) return -1;
+        int best = -1;
+        int bestValue = UNKNOWN - 1;
+        for(int column = 0; column < columns; column++) {
+            if(!position.canPlay(column)) continue;
+            if(position.isWinningMove(column)) return column;
+            position.play(column);
+            int value = position.isFull() ? DRAW : probe(position);
+            position.undo(column);
+            // the child's result is for the opponent
+            if(value != UNKNOWN) value = WIN + LOSS - value;
+            if(value > bestValue) {
+                bestValue = value;
+                best = column;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return tablebase mapped from the file named by the {@value #TABLEBASE_PROPERTY} system property,
+     * or null if the property is unset or the file cannot be read
+     */
+    public static Tablebase getDefault() { return DefaultHolder.TABLEBASE; }
+
+    // PACKAGE METHODS
+
+    /**
+     * @param key canonical key of a covered position
+     * @return index of position's result, or -1 if the key hashes outside the table
+     */
+    long index(long key) {
+        for(int level = 0; level < levelOffsets.length; level++) {
+            long bit = Long.remainderUnsigned(hash(key, level), levelBits[level]);
+            int block = levelOffsets[level] + (int) (bit / BLOCK_BITS) * BLOCK_BYTES;
+            int word = (int) (bit >>> 6) & 7;
+            long bits = data.getLong(block + 8 + 8 * word);
+            if((bits & (1L << bit)) == 0) continue;
+            long rank = data.getLong(block) + Long.bitCount(bits & ((1L << bit) - 1));
+            for(int w = 0; w < word; w++) rank += Long.bitCount(data.getLong(block + 8 + 8 * w));
+            return rank;
+        }
+        return -1;
+    }
+
+    /**
+     * @param index index of position's result
+     * @return result
+     */
+    int getValue(long index) {
+        long word = data.getLong(valuesOffset + (int) (index >>> 5) * 8);
+        return (int) (word >>> (2 * (index & 31))) & 3;
+    }
+
+    /**
+     * Stores a result - only valid on a tablebase mapped read-write, from a single thread
+     * @param index index of position's result
+     * @param value result
+     */
+    void setValue(long index, int value) {
+        int offset = valuesOffset + (int) (index >>> 5) * 8;
+        int shift = (int) (2 * (index & 31));
+        data.putLong(offset, data.getLong(offset) & ~(3L << shift) | (long) value << shift);
+    }
+
+    /**
+     * @param position any position
+     * @return key shared by position and its mirror image
+     */
+    static long canonicalKey(Position position) {
+        long key = position.getKey();
+        long mirrored = position.getMirroredKey();
+        return Long.compareUnsigned(key, mirrored) <= 0 ? key : mirrored;
+    }
+
+    /**
+     * @param key position key
+     * @param level hash level
+     * @return well mixed hash of key, independent for each level
+     */
+    static long hash(long key, int level) {
+        long z = key + (level + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param count number of results
+     * @return bytes needed to pack results
+     */
+    static long valuesBytes(long count) { return (count + 31) / 32 * 8; }
+
+    // HELPER METHODS
+
+    private boolean covers(Position position) {
+        if(position.getRows() != rows || position.getColumns() != columns) return false;
+        int empty = rows * columns - position.getMoves();
+        return empty >= 1 && empty <= maxEmpty;
+    }
+
+    /**
+     * Maps default tablebase once, on first use
+     */
+    private static final class DefaultHolder {
+        private static final Tablebase TABLEBASE = loadDefault();
+
+        private static Tablebase loadDefault() {
+            String file = System.getProperty(TABLEBASE_PROPERTY);
+            if(file == null) return null;
+            try {
+                return open(Paths.get(file));
+            } catch (IOException e) {
+                System.out.println("Unable to load tablebase: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
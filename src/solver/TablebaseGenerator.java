@@ -0,0 +1,254 @@
+package solver;
+
+import core.Bitboard;
+import core.Position;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a {@link Tablebase} file for one board geometry.
+ * <p>
+ * Reachable positions are enumerated forward from the empty board one ply at a time, keeping a single ply in memory
+ * and folding mirror images together, and every ply with at most the requested number of empty cells is kept. A
+ * minimal perfect hash is built over the kept keys and written out, then results are filled in backwards from the
+ * last empty cell, each position looking up the results of the positions its moves lead to. Every ply before the
+ * first kept one must be enumerated too, so the cost is set by the board size rather than the number of empty cells:
+ * boards up to about 5x5 generate in seconds, while the standard board is out of reach of a single machine.
+ * <p>
+ * Usage: TablebaseGenerator output rows columns maxEmpty
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class TablebaseGenerator {
+
+    /** Hash bits per key in each level - higher builds fewer levels but a larger file */
+    private static final double BITS_PER_KEY = 2.0;
+
+    /** Private constructor (Utility) */
+    private TablebaseGenerator() {}
+
+    /**
+     * Runs generator
+     * @param args output file, rows, columns, maximum empty cells
+     * @throws IOException if file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 4) {
+            System.out.println("Usage: TablebaseGenerator output rows columns maxEmpty");
+            return;
+        }
+        long start = System.nanoTime();
+        Tablebase tablebase = generate(Paths.get(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]));
+        System.out.printf("%d positions, %d bytes, %.1f s%n", tablebase.getCount(), Files.size(Paths.get(args[0])),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Generates tablebase file
+     * @param output file to write
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     * @param maxEmpty most empty cells a covered position may have
+     * @return generated tablebase, mapped read-only
+     * @throws IOException if file cannot be written
+     */
+    public static Tablebase generate(Path output, int rows, int columns, int maxEmpty) throws IOException {
+        if(rows < 1 || columns < 1 || !Bitboard.fits(rows, columns) || rows + 1 >= Long.SIZE)
+            throw new IllegalArgumentException("Unsupported board size " + rows + "x" + columns);
+        int cells = rows * columns;
+        if(maxEmpty < 1 || maxEmpty >= cells) throw new IllegalArgumentException("Empty cells out of range");
+
+        // keys of each kept ply, fewest empty cells last
+        List<long[]> plies = enumerate(rows, columns, maxEmpty);
+        long[] keys = concat(plies);
+        List<long[]> levels = buildHash(keys);
+        write(output, rows, columns, maxEmpty, keys.length, levels);
+
+        Tablebase tablebase = Tablebase.map(output, FileChannel.MapMode.READ_WRITE);
+        Position position = new Position(rows, columns);
+        for(int p = plies.size() - 1; p >= 0; p--) {
+            for(long key : plies.get(p)) {
+                position.setKey(key);
+                tablebase.setValue(tablebase.index(key), solve(tablebase, position));
+            }
+        }
+        return Tablebase.open(output);
+    }
+
+    // HELPER METHODS
+
+    /**
+     * @return canonical keys of every reachable position with between 1 and maxEmpty empty cells and no winner,
+     * one array per ply
+     */
+    private static List<long[]> enumerate(int rows, int columns, int maxEmpty) {
+        int cells = rows * columns;
+        List<long[]> kept = new ArrayList<>();
+        Position position = new Position(rows, columns);
+        long[] ply = {Tablebase.canonicalKey(position)};
+        for(int moves = 0; moves < cells - 1; moves++) {
+            LongSet next = new LongSet(ply.length * 2);
+            for(long key : ply) {
+                position.setKey(key);
+                for(int column = 0; column < columns; column++) {
+                    if(!position.canPlay(column) || position.isWinningMove(column)) continue;
+                    position.play(column);
+                    next.add(Tablebase.canonicalKey(position));
+                    position.undo(column);
+                }
+            }
+            ply = next.toArray();
+            if(cells - moves - 1 <= maxEmpty) kept.add(ply);
+        }
+        return kept;
+    }
+
+    /**
+     * Builds hash levels until every key has a bit to itself
+     * @param keys distinct keys
+     * @return hash bits of each level
+     */
+    private static List<long[]> buildHash(long[] keys) {
+        List<long[]> levels = new ArrayList<>();
+        long[] remaining = keys.clone();
+        while(remaining.length > 0) {
+            int level = levels.size();
+            long blocks = Math.max(1, (long) Math.ceil(remaining.length * BITS_PER_KEY / Tablebase.BLOCK_BITS));
+            long bitCount = blocks * Tablebase.BLOCK_BITS;
+            long[] seen = new long[(int) (bitCount / 64)];
+            long[] collided = new long[seen.length];
+            for(long key : remaining) {
+                long bit = Long.remainderUnsigned(Tablebase.hash(key, level), bitCount);
+                int word = (int) (bit >>> 6);
+                if((seen[word] & (1L << bit)) != 0) collided[word] |= 1L << bit;
+                seen[word] |= 1L << bit;
+            }
+            int left = 0;
+            for(long key : remaining) {
+                long bit = Long.remainderUnsigned(Tablebase.hash(key, level), bitCount);
+                if((collided[(int) (bit >>> 6)] & (1L << bit)) != 0) remaining[left++] = key;
+            }
+            for(int w = 0; w < seen.length; w++) seen[w] &= ~collided[w];
+            levels.add(seen);
+            remaining = Arrays.copyOf(remaining, left);
+        }
+        return levels;
+    }
+
+    /**
+     * Writes header and hash levels, with results zeroed
+     */
+    private static void write(Path output, int rows, int columns, int maxEmpty, long count, List<long[]> levels)
+            throws IOException {
+        long size = Tablebase.HEADER_BYTES + 8L * levels.size() + Tablebase.valuesBytes(count);
+        for(long[] level : levels) size += (long) level.length / 8 * Tablebase.BLOCK_BYTES;
+        if(size > Integer.MAX_VALUE) throw new IllegalArgumentException("Tablebase too large to map: " + size + " bytes");
+        try(OutputStream file = Files.newOutputStream(output);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeInt(maxEmpty);
+            out.writeInt(levels.size());
+            out.writeLong(count);
+            for(long[] level : levels) out.writeLong(level.length / 8);
+            long rank = 0;
+            for(long[] level : levels) {
+                for(int w = 0; w < level.length; w++) {
+                    if(w % 8 == 0) out.writeLong(rank);
+                    out.writeLong(level[w]);
+                    rank += Long.bitCount(level[w]);
+                }
+            }
+            for(long b = 0; b < Tablebase.valuesBytes(count); b++) out.write(0);
+        }
+    }
+
+    /**
+     * @param tablebase tablebase with results filled in for every position with fewer empty cells
+     * @param position covered position - left unchanged
+     * @return result for the player to move
+     */
+    private static int solve(Tablebase tablebase, Position position) {
+        int best = Tablebase.LOSS;
+        for(int column = 0; column < position.getColumns(); column++) {
+            if(!position.canPlay(column)) continue;
+            if(position.isWinningMove(column)) return Tablebase.WIN;
+            position.play(column);
+            int value = position.isFull() ? Tablebase.DRAW
+                    : Tablebase.WIN + Tablebase.LOSS - tablebase.getValue(tablebase.index(Tablebase.canonicalKey(position)));
+            position.undo(column);
+            if(value > best) best = value;
+        }
+        return best;
+    }
+
+    /**
+     * @return all keys in one array
+     */
+    private static long[] concat(List<long[]> plies) {
+        long total = 0;
+        for(long[] ply : plies) total += ply.length;
+        if(total > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many positions: " + total);
+        long[] keys = new long[(int) total];
+        int offset = 0;
+        for(long[] ply : plies) {
+            System.arraycopy(ply, 0, keys, offset, ply.length);
+            offset += ply.length;
+        }
+        return keys;
+    }
+
+    /**
+     * Open addressed set of non-zero longs
+     */
+    private static final class LongSet {
+        private long[] slots;
+        private int size;
+
+        private LongSet(int expected) {
+            slots = new long[Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1];
+        }
+
+        private void add(long key) {
+            if(size * 2 >= slots.length) grow();
+            if(insert(slots, key)) size++;
+        }
+
+        private long[] toArray() {
+            long[] keys = new long[size];
+            int n = 0;
+            for(long slot : slots) if(slot != 0) keys[n++] = slot;
+            return keys;
+        }
+
+        private void grow() {
+            long[] larger = new long[slots.length * 2];
+            for(long slot : slots) if(slot != 0) insert(larger, slot);
+            slots = larger;
+        }
+
+        private static boolean insert(long[] table, long key) {
+            int mask = table.length - 1;
+            int i = (int) (Tablebase.hash(key, 0) >>> 32) & mask;
+            while(table[i] != 0) {
+                if(table[i] == key) return false;
+                i = (i + 1) & mask;
+            }
+            table[i] = key;
+            return true;
+        }
+    }
+}
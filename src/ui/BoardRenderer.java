@@ -0,0 +1,116 @@
+package ui;
+
+import core.Connect4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Renders a Connect4 board as text into a single reused byte buffer, so each redraw is one write to the terminal.
+ * Can either draw the full board, or - on ANSI terminals - redraw only the cells that changed since the last render,
+ * using cursor movement relative to the line below the board.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+class BoardRenderer {
+
+    /** Escape sequence prefix */
+    private static final byte ESC = 0x1B;
+
+    // INSTANCE VARIABLES
+    /** Number of rows on board */
+    private final int rows;
+    /** Number of columns on board */
+    private final int columns;
+    /** Output buffer, holds a full board or a set of cell updates */
+    private byte[] buffer;
+    /** Bytes used in buffer */
+    private int length;
+    /** Token character currently shown in each cell, row-major from the top row */
+    private final byte[] shown;
+
+    /**
+     * Constructor
+     * @param rows number of rows on board
+     * @param columns number of columns on board
+     */
+    BoardRenderer(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.buffer = new byte[rows * (2 * columns + 2)];
+        this.shown = new byte[rows * columns];
+    }
+
+    /**
+     * Renders full board, leaving the cursor on the line below it
+     * @param board board to render
+     * @return this renderer
+     */
+    BoardRenderer renderFull(Connect4.Board board) {
+        length = 0;
+        for(int i = 1; i <= rows; i++) {
+            append('|');
+            for(int j = 1; j <= columns; j++) {
+                byte token = (byte) board.getTokenAt(i, j).charAt(0);
+                shown[(i - 1) * columns + j - 1] = token;
+                append(token);
+                append('|');
+            }
+            append('\n');
+        }
+        return this;
+    }
+
+    /**
+     * Renders ANSI escape sequences redrawing only cells that changed since the last render - the cursor must be on
+     * the line below a board drawn by {@link #renderFull(Connect4.Board)} and is returned there
+     * @param board board to render
+     * @return this renderer
+     */
+    BoardRenderer renderChanges(Connect4.Board board) {
+        length = 0;
+        for(int i = 1; i <= rows; i++) {
+            for(int j = 1; j <= columns; j++) {
+                byte token = (byte) board.getTokenAt(i, j).charAt(0);
+                int cell = (i - 1) * columns + j - 1;
+                if(shown[cell] == token) continue;
+                shown[cell] = token;
+                int up = rows - i + 1;
+                // cursor up to the cell's row, across to its column, write token, then back down to column 1
+                escape(up, 'A');
+                escape(2 * j, 'G');
+                append(token);
+                escape(up, 'B');
+                append('\r');
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes rendered bytes in a single call and flushes
+     * @param out stream to write to
+     * @throws IOException if the write fails
+     */
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+
+    // HELPER METHODS
+
+    private void escape(int count, char command) {
+        append(ESC);
+        append('[');
+        if(count >= 100) append('0' + count / 100);
+        if(count >= 10) append('0' + count / 10 % 10);
+        append('0' + count % 10);
+        append(command);
+    }
+
+    private void append(int b) {
+        if(length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        buffer[length++] = (byte) b;
+    }
+}
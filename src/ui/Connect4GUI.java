@@ -105,7 +105,7 @@ public class Connect4GUI extends Application{
             ". Click a button to place a tile."
         );
         prompt.setFont(font);
-        if(!game.gameTied() && !game.gameWon()) {
+        if(game.getStatus() == Connect4.GameStatus.IN_PROGRESS) {
             contentPane.setTop(prompt);
         }
         pane.getChildren().add(contentPane);
@@ -158,7 +158,7 @@ public class Connect4GUI extends Application{
                 grid.add(cell, j, i);
             }
         }
-        if (!board.winCondition() && !board.tieCondition()) {
+        if (game.getStatus() == Connect4.GameStatus.IN_PROGRESS) {
             int buttonRow = board.getBoardRows() + 1;
             for (int i = 0; i < board.getBoardColumns(); i++)
             {
@@ -169,7 +169,7 @@ public class Connect4GUI extends Application{
                     Object node = event.getSource();
                     Button source = (Button) node;
                     if(!game.facilitateTurn(Integer.parseInt(source.getText()))) { invalidMoveAlert(); }
-                    if(game.isSinglePlayerMode() && !game.gameWon() && !game.gameTied()) facilitateComputerMove();
+                    else if(!game.getCurrentPlayer().isHuman() && !game.gameWon() && !game.gameTied()) facilitateComputerMove();
                     stage.setScene(gameScene());
                     if(game.gameWon())  promptForPlayAgain(game.getWinner().getPlayerName() + " won the game!");
                     if(game.gameTied()) promptForPlayAgain("The game has resulted in a tie.");
@@ -185,11 +185,7 @@ public class Connect4GUI extends Application{
      * Helper method to move for computer
      */
     private void facilitateComputerMove() {
-        game.getComputer().setBoardState(game.getBoard());
-        int selection = game.getComputer().makeMove();
-        while (!game.facilitateTurn(selection)) {
-            selection = game.getComputer().makeMove();
-        }
+        game.facilitateComputerTurn();
     }
 
     /**
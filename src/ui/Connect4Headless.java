@@ -0,0 +1,63 @@
+package ui;
+
+import core.Connect4;
+import core.Connect4ComputerPlayer;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Headless mode for Connect4 Game - plays computer players against each other with no UI, for batch and bot
+ * processes. Options following {@code --headless}: a number of games to play, and {@code --timing} to report the
+ * time from JVM start to the first move.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class Connect4Headless {
+
+    /**
+     * Private constructor (Utility)
+     */
+    private Connect4Headless() {}
+
+    /**
+     * Orchestrator of headless game logic
+     * @param game Connect4 game to play
+     */
+    public static void startGame(Connect4 game) {
+        int games = 1;
+        boolean timing = false;
+        String[] args = Connect4.getArguments();
+        for(int i = 1; i < args.length; i++) {
+            if(args[i].equals("--timing")) timing = true;
+            else if(args[i].matches("[1-9][0-9]{0,8}")) games = Integer.parseInt(args[i]);
+            else {
+                System.err.println("Unknown option: " + args[i]);
+                System.err.println("Usage: Connect4 --headless [games] [--timing]");
+                System.exit(2);
+            }
+        }
+        Connect4ComputerPlayer first = new Connect4ComputerPlayer("X", "Red");
+        game.setPlayers(first, new Connect4ComputerPlayer("O", "Yellow"));
+
+        int firstWins = 0, secondWins = 0, ties = 0;
+        for(int g = 0; g < games; g++) {
+            if(g > 0) game.restartGame();
+            while(game.getStatus() == Connect4.GameStatus.IN_PROGRESS) {
+                game.facilitateComputerTurn();
+                if(timing && g == 0 && game.getBoard().getMovesPlayed() == 1) logTimeToFirstMove();
+            }
+            if(game.gameTied()) ties++;
+            else if(game.getWinner() == first) firstWins++;
+            else secondWins++;
+        }
+        System.out.println("Played " + games + " game(s): first player won " + firstWins +
+                ", second player won " + secondWins + ", tied " + ties);
+    }
+
+    /** Log time elapsed since JVM start to console - management classes are only loaded after the time is taken */
+    private static void logTimeToFirstMove() {
+        long now = System.currentTimeMillis();
+        long start = ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println("First move " + (now - start) + " ms after JVM start");
+    }
+}
@@ -0,0 +1,189 @@
+package ui;
+
+import core.Connect4;
+import core.GameListener;
+import core.Player;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Non-interactive console for Connect4 Game - plays games back to back from a move script read from a file or pipe.
+ * <p>
+ * Each non-blank line of the script is one game: whitespace separated column numbers, played alternately by two
+ * players. A line starting with {@code C} seats the computer as the second player, and the remaining columns are
+ * the first player's moves only. Lines starting with {@code #} are comments.
+ * <p>
+ * Options following {@code --script path}: {@code -} as the path reads standard input, {@code --ansi} redraws only
+ * the changed cell after each move, and {@code --quiet} prints game results only.
+ * @author Jesse Wheeler
+ * @version 1.0
+ */
+public class Connect4ScriptConsole implements GameListener {
+
+    //INSTANCE VARIABLES
+    /** Connect4 Game */
+    private final Connect4 game;
+    /** Board output buffer, reused for every redraw */
+    private final BoardRenderer renderer;
+    /** Console output - written once per move */
+    private final OutputStream out;
+    /** Redraw only changed cells using ANSI escape sequences */
+    private final boolean ansi;
+    /** Print game results only */
+    private final boolean quiet;
+    /** True once the current game's board has been drawn in full */
+    private boolean boardShown;
+
+    /**
+     * Private constructor accessible only from startGame method
+     * @param game Game to play
+     * @param ansi true to redraw only changed cells
+     * @param quiet true to print game results only
+     */
+    private Connect4ScriptConsole(Connect4 game, boolean ansi, boolean quiet) {
+        this.game = game;
+        this.renderer = new BoardRenderer(game.getBoard().getBoardRows(), game.getBoard().getBoardColumns());
+        this.out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        this.ansi = ansi;
+        this.quiet = quiet;
+    }
+
+    /**
+     * Orchestrator of scripted console logic
+     * @param game Connect4 game to play scripted games with
+     */
+    public static void startGame(Connect4 game) {
+        String[] args = Connect4.getArguments();
+        String path = null;
+        boolean ansi = false, quiet = false;
+        for(int i = 1; i < args.length; i++) {
+            if(args[i].equals("--ansi")) ansi = true;
+            else if(args[i].equals("--quiet")) quiet = true;
+            else if(path == null && (args[i].equals("-") || !args[i].startsWith("-"))) path = args[i];
+            else {
+                // a mistyped option would otherwise be opened as the script
+                System.err.println((args[i].startsWith("-") ? "Unknown option: " : "Unexpected argument: ") + args[i]);
+                path = null;
+                break;
+            }
+        }
+        if(path == null) {
+            System.err.println("Usage: Connect4 --script (path | -) [--ansi] [--quiet]");
+            System.exit(2);
+        }
+        Connect4ScriptConsole console = new Connect4ScriptConsole(game, ansi, quiet);
+        game.addGameListener(console);
+        try(BufferedReader reader = path.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            console.playAll(reader);
+        } catch (IOException e) {
+            System.out.println("Unable to read script: " + e.getMessage());
+        } finally {
+            game.removeGameListener(console);
+        }
+    }
+
+    /**
+     * Plays every game in script and logs a summary
+     * @param reader script source
+     * @throws IOException if the script cannot be read
+     */
+    private void playAll(BufferedReader reader) throws IOException {
+        int games = 0, firstWins = 0, secondWins = 0, ties = 0, unfinished = 0;
+        String line;
+        while((line = reader.readLine()) != null) {
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#")) continue;
+            games++;
+            if(games > 1) game.restartGame();
+            String result = play(line);
+            if(game.gameTied()) ties++;
+            else if(game.gameWon() && game.getWinner() == game.getPlayer(0)) firstWins++;
+            else if(game.gameWon()) secondWins++;
+            else unfinished++;
+            write("Game " + games + ": " + result + "\n");
+        }
+        write("Played " + games + " game(s): first player won " + firstWins + ", second player won " + secondWins +
+                ", tied " + ties + ", unfinished " + unfinished + "\n");
+    }
+
+    /**
+     * Plays a single scripted game
+     * @param line script line
+     * @return description of result
+     */
+    private String play(String line) {
+        String[] tokens = line.split("\\s+");
+        int start = 0;
+        if(tokens[0].equalsIgnoreCase("C")) {
+            game.setSinglePlayerMode();
+            start = 1;
+        } else {
+            game.setDefaultPlayers();
+        }
+        boardShown = false;
+        if(!quiet) render();
+        for(int i = start; i < tokens.length && game.getStatus() == Connect4.GameStatus.IN_PROGRESS; i++) {
+            int column;
+            try {
+                column = Integer.parseInt(tokens[i]);
+            } catch (NumberFormatException e) {
+                return "invalid column '" + tokens[i] + "' after " + game.getBoard().getMovesPlayed() + " moves";
+            }
+            if(!game.facilitateTurn(column))
+                return "invalid column " + column + " after " + game.getBoard().getMovesPlayed() + " moves";
+            if(game.getStatus() == Connect4.GameStatus.IN_PROGRESS && !game.getCurrentPlayer().isHuman())
+                game.facilitateComputerTurn();
+        }
+        int moves = game.getBoard().getMovesPlayed();
+        if(game.gameWon()) return game.getWinner().getPlayerName() + " won in " + moves + " moves";
+        if(game.gameTied()) return "tied";
+        return "unfinished after " + moves + " moves";
+    }
+
+    /**
+     * Redraws board after each move
+     */
+    @Override
+    public void moveApplied(Connect4 game, Player player, int row, int column) {
+        if(!quiet) render();
+    }
+
+    /**
+     * Draws board - in full the first time in each game, then only changed cells in ANSI mode
+     */
+    private void render() {
+        Connect4.Board board = game.getBoard();
+        try {
+            if(ansi && boardShown) renderer.renderChanges(board).writeTo(out);
+            else renderer.renderFull(board).writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        boardShown = true;
+    }
+
+    /**
+     * Writes message and flushes
+     * @param message text to write
+     */
+    private void write(String message) {
+        try {
+            out.write(message.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
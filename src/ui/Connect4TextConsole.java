@@ -1,7 +1,10 @@
 package ui;
 import core.Connect4;
-import core.Connect4ComputerPlayer;
+import core.GameListener;
+import core.Player;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Scanner;
 
 /**
@@ -9,7 +12,7 @@ import java.util.Scanner;
  * @author Jesse Wheeler
  * @version 1.2
  */
-public class Connect4TextConsole {
+public class Connect4TextConsole implements GameListener {
 
     //INSTANCE VARIABLES
     /** Connect4 Game */
@@ -18,6 +21,8 @@ public class Connect4TextConsole {
     private boolean play;
     /** User Input utility */
     private Scanner input;
+    /** Board output buffer, reused for every redraw */
+    private BoardRenderer renderer;
 
     /**
      * Private constructor accessible only from startGame method (Singleton)
@@ -27,6 +32,7 @@ public class Connect4TextConsole {
         this.game = game;
         this.play = true;
         this.input = new Scanner(System.in);
+        this.game.addGameListener(this);
     }
 
     /**
@@ -40,18 +46,11 @@ public class Connect4TextConsole {
             console.displayBoard();
             console.logStartUpMessage();
             console.promptForPlayAgainstComputer();
-            // Play game
-            while(!console.game.gameWon() && !console.game.gameTied()) {
-                // ch
+            // Play game - board output and end game results are handled by game event callbacks
+            while(console.game.getStatus() == Connect4.GameStatus.IN_PROGRESS) {
                 if(!console.game.getCurrentPlayer().isHuman()) {
                     // logic if player is computer
-                    console.game.getComputer().setBoardState(game.getBoard());
-                    int selection = game.getComputer().makeMove();
-                    while (!console.game.facilitateTurn(selection)) {
-                        selection = game.getComputer().makeMove();
-                    }
-                    System.out.println("-------------------------------------");
-                    System.out.println("Computer selected column " + selection);
+                    console.game.facilitateComputerTurn();
                 } else {
                     // logic if player is human
                     int selection = console.promptForTurn();
@@ -60,32 +59,57 @@ public class Connect4TextConsole {
                         selection = console.promptForTurn();
                     }
                 }
-                // ouput board state
-                console.displayBoard();
             }
-            // Process end game results
-            if(console.game.gameTied())
-                console.logTieMessage();
-            else
-                console.logWinnerToConsole();
             // See if users would like to play once more
             console.promptForPlayAgain();
         }
         // Close program gracefully
         console.logGoodbyeMessage();
+        console.game.removeGameListener(console);
         console.input.close();
     }
 
+    /**
+     * Outputs board state after each move
+     * @param game Game the move was made in
+     * @param player Player who made the move
+     * @param row Row index the token landed in
+     * @param column Column index selected by the player
+     */
+    @Override
+    public void moveApplied(Connect4 game, Player player, int row, int column) {
+        if(!player.isHuman()) {
+            System.out.println("-------------------------------------");
+            System.out.println(player.getPlayerName() + " selected column " + column);
+        }
+        displayBoard();
+    }
+
+    /**
+     * Logs winner when game is won
+     * @param game Game that was won
+     * @param winner Winning player
+     */
+    @Override
+    public void gameWon(Connect4 game, Player winner) { logWinnerToConsole(); }
+
+    /**
+     * Logs tie when game is tied
+     * @param game Game that was tied
+     */
+    @Override
+    public void gameTied(Connect4 game) { logTieMessage(); }
+
     /**
      * Displays current game board state
      */
     private void displayBoard() {
-        for(int i = 1; i <= this.game.getBoard().getBoardRows(); i++) {
-            System.out.print("|");
-            for(int j = 1; j <= this.game.getBoard().getBoardColumns(); j++) {
-                System.out.print(this.game.getBoard().getTokenAt(i,j) + "|");
-            }
-            System.out.print("\n");
+        Connect4.Board board = this.game.getBoard();
+        if(renderer == null) renderer = new BoardRenderer(board.getBoardRows(), board.getBoardColumns());
+        try {
+            renderer.renderFull(board).writeTo(System.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 